@@ -3,12 +3,14 @@ CREATE TABLE IF NOT EXISTS saved_articles (
     id INT AUTO_INCREMENT PRIMARY KEY,
     user_id INT NOT NULL,
     title VARCHAR(255) NOT NULL,
-    content TEXT,
+    content_compressed MEDIUMBLOB,
     image_url TEXT,
     page_id VARCHAR(50),
     wiki_url TEXT,
     date_downloaded DATETIME,
+    version BIGINT NOT NULL DEFAULT 0,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
-    INDEX idx_user_id (user_id)
+    INDEX idx_user_id (user_id),
+    INDEX idx_user_date (user_id, date_downloaded, id)
 ); 
\ No newline at end of file
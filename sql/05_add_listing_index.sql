@@ -0,0 +1,3 @@
+-- Indice per la paginazione keyset degli articoli salvati (user_id, date_downloaded, id).
+-- Solo per database creati prima dell'aggiunta dell'indice in 02_create_tables.sql
+ALTER TABLE saved_articles ADD INDEX idx_user_date (user_id, date_downloaded, id);
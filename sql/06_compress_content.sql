@@ -0,0 +1,5 @@
+-- Contenuto degli articoli compresso (formato di COMPRESS(), letto da CompressedTextConverter).
+-- Solo per database creati prima di content_compressed in 02_create_tables.sql
+ALTER TABLE saved_articles ADD COLUMN content_compressed MEDIUMBLOB AFTER title;
+UPDATE saved_articles SET content_compressed = COMPRESS(content) WHERE content IS NOT NULL;
+ALTER TABLE saved_articles DROP COLUMN content;
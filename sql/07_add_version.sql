@@ -0,0 +1,3 @@
+-- Versione per il controllo ottimistico degli aggiornamenti (Article.version).
+-- Solo per database creati prima della colonna version in 02_create_tables.sql
+ALTER TABLE saved_articles ADD COLUMN version BIGINT NOT NULL DEFAULT 0 AFTER date_downloaded;
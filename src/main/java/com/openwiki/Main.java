@@ -1,23 +1,52 @@
 package com.openwiki;
 
 import io.javalin.Javalin;
-import io.javalin.json.JavalinJackson;
 import io.javalin.http.Context;
+import io.javalin.http.UnauthorizedResponse;
 import java.util.HashMap;
 import java.util.Map;
 import com.openwiki.config.DatabaseConfig;
 import com.openwiki.dao.ArticleDAO;
 import java.sql.Connection;
 import com.openwiki.controller.WikiController;
+import com.openwiki.service.ArticleRefresher;
+import com.openwiki.service.WikiService;
 
 import com.openwiki.controller.AuthController;
+import com.openwiki.metrics.Metrics;
+import com.openwiki.middleware.AuthMiddleware;
+import com.openwiki.middleware.RequestLogging;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-
+import com.openwiki.config.AppConfig;
 import com.openwiki.config.HibernateConfig;
+import com.openwiki.config.ServerConfig;
 
 public class Main {
+    private static final Logger logger = LoggerFactory.getLogger(Main.class);
+
     public static void main(String[] args) {
+        // Thread di piattaforma o virtual thread (server.virtualThreads=true, JDK 21+)
+        ServerConfig.applyThreadingMode();
+
+        WikiService wikiService = new WikiService();
+        ArticleRefresher articleRefresher = ArticleRefresher.fromConfig(wikiService);
+        Javalin app = createApp(wikiService);
+
+        app.start(8080);
+        articleRefresher.start();
+        wikiService.prefetchFeaturedArticles();
+
+        // Aggiungi il hook di chiusura dell'EntityManagerFactory
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            articleRefresher.close();
+            HibernateConfig.closeEntityManagerFactory();
+        }));
+    }
+
+    // Configurazione, middleware e route, senza avviare il server: la usa anche il test di carico end-to-end
+    public static Javalin createApp(WikiService wikiService) {
         Javalin app = Javalin.create(config -> {
             config.plugins.enableCors(cors -> {
                 cors.add(it -> {
@@ -27,18 +56,22 @@ public class Main {
                 });
             });
             
-            config.plugins.enableDevLogging();
+            // Il dev logging di Javalin scrive header e body di ogni richiesta: solo in sviluppo
+            if (AppConfig.getBoolean("server.devLogging", false)) {
+                config.plugins.enableDevLogging();
+            }
             config.http.defaultContentType = "application/json";
-            // Configura Jackson per gestire LocalDateTime
-            config.jsonMapper(new JavalinJackson().updateMapper(mapper -> 
-                mapper.registerModule(new JavaTimeModule())
-            ));
+            ServerConfig.applyCompression(config);
+            config.jsonMapper(ServerConfig.jsonMapper());
         });
+        Metrics.instrument(app);
 
-        // Log all requests
+        // Log delle richieste: a DEBUG e a campione, con cookie e token oscurati
         app.before(ctx -> {
-            System.out.println("Incoming request: " + ctx.method() + " " + ctx.path());
-            System.out.println("Headers: " + ctx.headerMap());
+            if (logger.isDebugEnabled() && RequestLogging.sampled()) {
+                logger.debug("Incoming request: {} {} headers={}", ctx.method(), ctx.path(),
+                    RequestLogging.headers(ctx.headerMap()));
+            }
         });
 
         // Error handlers
@@ -47,46 +80,57 @@ public class Main {
             ctx.json(Map.of("error", e.getMessage()));
         });
 
+        app.exception(UnauthorizedResponse.class, (e, ctx) -> {
+            ctx.status(401);
+            ctx.json(Map.of("error", e.getMessage(), "code", e.getDetails().getOrDefault("code", "AUTH_REQUIRED")));
+        });
+
         app.error(404, ctx -> {
             ctx.json(Map.of("error", "Not found: " + ctx.path()));
         });
 
-        WikiController wikiController = new WikiController();
+        WikiController wikiController = new WikiController(wikiService, new ArticleDAO());
         AuthController authController = new AuthController();
 
         // Auth endpoints (non protetti)
         app.routes(() -> {
-            app.post("/api/auth/login", ctx -> {
-                System.out.println("Login endpoint hit");
-                authController.login(ctx);
-            });
+            app.post("/api/auth/login", authController::login);
             app.get("/api/auth/user", authController::getUserInfo);
         });
 
         // Test endpoints (non protetti)
         app.get("/api/test", Main::testHandler);
         app.get("/api/test/db", Main::testDatabase);
+        app.get("/api/test/db/pool", ctx -> ctx.json(DatabaseConfig.poolStats()));
+        app.get("/api/test/db/cache", ctx -> ctx.json(HibernateConfig.cacheStats()));
+        app.get("/api/test/search", ctx -> ctx.json(new ArticleDAO().searchIndexStats()));
+        app.get("/metrics", ctx -> ctx.contentType(Metrics.contentType()).result(Metrics.scrape()));
+
+        // L'utente degli articoli salvati arriva dalla sessione Flask (ctx.attribute("userId"))
+        AuthMiddleware authMiddleware = new AuthMiddleware();
+        app.before("/api/articles", authMiddleware);
+        app.before("/api/articles/*", authMiddleware);
 
-        // Configura gli endpoint senza protezione
         app.post("/api/articles", wikiController::saveArticle);
         app.get("/api/articles", wikiController::getUserArticles);
+        app.get("/api/articles/summaries", wikiController::getUserArticleSummaries);
+        app.post("/api/articles/import", wikiController::importArticles);
+        app.get("/api/articles/export", wikiController::exportArticles);
+        app.get("/api/articles/search", wikiController::searchUserArticles);
+        app.get("/api/articles/{id}", wikiController::getUserArticle);
         app.delete("/api/articles/{id}", wikiController::deleteArticle);
         app.put("/api/articles/{id}", wikiController::updateArticle);
 
         // Endpoint Wikipedia (senza autenticazione)
         app.get("/api/wikipedia/search", wikiController::search);
         app.get("/api/wikipedia/article/{title}", wikiController::getArticle);
+        app.post("/api/wikipedia/articles", wikiController::getArticles);
         app.get("/api/wikipedia/featured", wikiController::getFeaturedArticle);
+        app.get("/api/wikipedia/cache/stats", wikiController::getCacheStats);
 
         // Rimuovi la protezione degli endpoint Wikipedia
         // app.before("/api/wikipedia/*", new AuthMiddleware());
-
-        app.start(8080);
-
-        // Aggiungi il hook di chiusura dell'EntityManagerFactory
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            HibernateConfig.closeEntityManagerFactory();
-        }));
+        return app;
     }
 
     private static void testHandler(Context ctx) {
@@ -0,0 +1,168 @@
+package com.openwiki.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.openwiki.config.AppConfig;
+import com.openwiki.metrics.Metrics;
+import com.openwiki.model.Article;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+public class ArticleCache {
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private final AsyncCache<String, Article> cache;
+
+    public ArticleCache(long maxBytes, Duration ttl) {
+        // Caffeine usa W-TinyLFU: gli articoli popolari sopravvivono alle scansioni di titoli rari
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((String key, Article article) -> weigh(key, article))
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .buildAsync();
+    }
+
+    public static ArticleCache fromConfig() {
+        ArticleCache articleCache = new ArticleCache(
+            AppConfig.getLong("wiki.cache.article.maxBytes", 64L * 1024 * 1024),
+            Duration.ofSeconds(AppConfig.getLong("wiki.cache.article.ttlSeconds", 1800)));
+        Metrics.monitor(articleCache.cache, "articles");
+        return articleCache;
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        Article load(String title) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface AsyncLoader {
+        CompletableFuture<Article> load(String title);
+    }
+
+    public Article get(String title, Loader loader) throws Exception {
+        String key = normalizeTitle(title);
+
+        // Single-flight: solo il primo chiamante installa il future e interroga Wikipedia,
+        // gli altri attendono lo stesso risultato
+        CompletableFuture<Article> pending = new CompletableFuture<>();
+        CompletableFuture<Article> future = cache.get(key, (k, executor) -> pending);
+        if (future == pending) {
+            try {
+                pending.complete(loader.load(title));
+            } catch (Exception e) {
+                // Caffeine rimuove automaticamente i future completati con errore
+                pending.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            return copyOf(future.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // Variante non bloccante: i chiamanti concorrenti condividono lo stesso future in volo
+    public CompletableFuture<Article> getAsync(String title, AsyncLoader loader) {
+        return cache.get(normalizeTitle(title), (key, executor) -> loader.load(title))
+            .thenApply(ArticleCache::copyOf);
+    }
+
+    // Restituisce anche un caricamento ancora in corso, così il batch non duplica la richiesta
+    public CompletableFuture<Article> getIfPresentAsync(String title) {
+        CompletableFuture<Article> future = cache.getIfPresent(normalizeTitle(title));
+        return future != null ? future.thenApply(ArticleCache::copyOf) : null;
+    }
+
+    public void put(String title, Article article) {
+        cache.put(normalizeTitle(title), CompletableFuture.completedFuture(copyOf(article)));
+    }
+
+    // Le voci più richieste secondo le frequenze di W-TinyLFU, già caricate; la lettura non conta come accesso
+    public Map<String, Article> hottest(int limit) {
+        Map<String, Article> result = new LinkedHashMap<>();
+        cache.synchronous().policy().eviction().ifPresent(eviction ->
+            eviction.hottest(limit).forEach((key, article) -> result.put(key, copyOf(article))));
+        return result;
+    }
+
+    public void invalidate(String title) {
+        cache.synchronous().invalidate(normalizeTitle(title));
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    public Map<String, Object> stats() {
+        cache.synchronous().cleanUp();
+        CacheStats stats = cache.synchronous().stats();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        result.put("evictedBytes", stats.evictionWeight());
+        result.put("loadFailures", stats.loadFailureCount());
+        result.put("entries", cache.synchronous().estimatedSize());
+        cache.synchronous().policy().eviction()
+            .ifPresent(eviction -> result.put("bytes", eviction.weightedSize().orElse(0)));
+        return result;
+    }
+
+    // Stessa normalizzazione di MediaWiki: "roma_antica" e "Roma antica" sono la stessa pagina
+    public static String normalizeTitle(String title) {
+        String normalized = title.replace('_', ' ').trim().replaceAll("\\s+", " ");
+        if (normalized.isEmpty()) {
+            return normalized;
+        }
+        int first = normalized.codePointAt(0);
+        return new StringBuilder()
+            .appendCodePoint(Character.toUpperCase(first))
+            .append(normalized, Character.charCount(first), normalized.length())
+            .toString();
+    }
+
+    // Stima approssimativa dell'occupazione in heap (stringhe UTF-16 + overhead degli oggetti)
+    static int weigh(String key, Article article) {
+        long bytes = ENTRY_OVERHEAD_BYTES + 2L * (key.length()
+            + length(article.getTitle())
+            + length(article.getContent())
+            + length(article.getImageUrl())
+            + length(article.getPageId())
+            + length(article.getWikiUrl()));
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    // I controller modificano l'articolo restituito: non esporre mai l'istanza in cache
+    private static Article copyOf(Article source) {
+        Article copy = new Article();
+        copy.setId(source.getId());
+        copy.setUserId(source.getUserId());
+        copy.setTitle(source.getTitle());
+        copy.setContent(source.getContent());
+        copy.setImageUrl(source.getImageUrl());
+        copy.setDateDownloaded(source.getDateDownloaded());
+        copy.setPageId(source.getPageId());
+        copy.setWikiUrl(source.getWikiUrl());
+        copy.setVersion(source.getVersion());
+        copy.setRevision(source.getRevision());
+        copy.setTouched(source.getTouched());
+        return copy;
+    }
+}
@@ -0,0 +1,123 @@
+package com.openwiki.cache;
+
+import com.openwiki.config.AppConfig;
+import com.openwiki.metrics.Metrics;
+import com.openwiki.model.Article;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Coda limitata di articoli casuali già scaricati: l'articolo in evidenza esce dalla coda invece di costare
+// due chiamate a Wikipedia. Sotto la soglia parte un solo riempimento asincrono alla volta
+public class FeaturedArticlePool {
+    private static final Logger logger = LoggerFactory.getLogger(FeaturedArticlePool.class);
+
+    private final BlockingQueue<Article> queue;
+    private final int capacity;
+    private final int refillThreshold;
+    // Riceve quanti articoli servono e restituisce gli articoli scaricati
+    private final IntFunction<CompletableFuture<List<Article>>> producer;
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong refills = new AtomicLong();
+    private final AtomicLong refillFailures = new AtomicLong();
+    private volatile long lastRefillMillis;
+    private volatile long maxRefillMillis;
+
+    public FeaturedArticlePool(int capacity, int refillThreshold, IntFunction<CompletableFuture<List<Article>>> producer) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.capacity = capacity;
+        this.refillThreshold = refillThreshold;
+        this.producer = producer;
+    }
+
+    public static FeaturedArticlePool fromConfig(IntFunction<CompletableFuture<List<Article>>> producer) {
+        int capacity = AppConfig.getInt("wiki.featured.poolSize", 20);
+        FeaturedArticlePool pool =
+            new FeaturedArticlePool(capacity, AppConfig.getInt("wiki.featured.refillThreshold", capacity / 2), producer);
+        Metrics.monitor(pool);
+        return pool;
+    }
+
+    // null se la coda è vuota: il chiamante passa alla richiesta diretta
+    public Article poll() {
+        if (capacity <= 0) {
+            return null;
+        }
+        Article article = queue.poll();
+        if (article != null) {
+            served.incrementAndGet();
+        } else {
+            fallbacks.incrementAndGet();
+        }
+        if (queue.size() <= refillThreshold) {
+            refill();
+        }
+        return article;
+    }
+
+    // Restituisce il riempimento in corso, oppure null se un altro è già in volo o la coda è piena
+    public CompletableFuture<Void> refill() {
+        int missing = capacity - queue.size();
+        if (missing <= 0 || !refilling.compareAndSet(false, true)) {
+            return null;
+        }
+        long start = System.nanoTime();
+        CompletableFuture<List<Article>> produced;
+        try {
+            produced = producer.apply(missing);
+        } catch (RuntimeException e) {
+            produced = CompletableFuture.failedFuture(e);
+        }
+        return produced.handle((articles, e) -> {
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            lastRefillMillis = millis;
+            maxRefillMillis = Math.max(maxRefillMillis, millis);
+            if (e != null) {
+                refillFailures.incrementAndGet();
+                logger.warn("Featured article refill failed: {}", e.getMessage());
+            } else {
+                // Se nel frattempo la coda si è riempita gli articoli in eccesso si scartano
+                articles.forEach(queue::offer);
+                refills.incrementAndGet();
+            }
+            refilling.set(false);
+            return null;
+        });
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    public long lastRefillMillis() {
+        return lastRefillMillis;
+    }
+
+    public long refillFailures() {
+        return refillFailures.get();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("depth", queue.size());
+        result.put("capacity", capacity);
+        result.put("served", served.get());
+        result.put("fallbacks", fallbacks.get());
+        result.put("refills", refills.get());
+        result.put("refillFailures", refillFailures.get());
+        result.put("refilling", refilling.get());
+        result.put("lastRefillMillis", lastRefillMillis);
+        result.put("maxRefillMillis", maxRefillMillis);
+        return result;
+    }
+}
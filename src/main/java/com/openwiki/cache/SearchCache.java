@@ -0,0 +1,295 @@
+package com.openwiki.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import com.openwiki.config.AppConfig;
+import com.openwiki.metrics.Metrics;
+import com.openwiki.model.WikiSearchResult;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class SearchCache {
+    private static final Logger logger = LoggerFactory.getLogger(SearchCache.class);
+
+    // Condiviso da tutte le istanze (thread daemon): serve solo ai refresh in background dei loader bloccanti
+    private static final ExecutorService REFRESH_EXECUTOR = Executors.newFixedThreadPool(
+        AppConfig.getInt("wiki.cache.search.refreshThreads", 2), runnable -> {
+            Thread thread = new Thread(runnable, "search-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private final AsyncCache<String, Entry> cache;
+    // Hit e miss si registrano qui a mano (una richiesta con limit più alto della voce in cache è un miss),
+    // ma restano le statistiche di Caffeine: le stesse di stats() e delle metriche Micrometer
+    private final StatsCounter statsCounter = new ConcurrentStatsCounter();
+    private final long freshNanos;
+    private final boolean staleWhileRevalidate;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    public SearchCache(long maxEntries, Duration freshTtl, Duration negativeTtl,
+                       Duration staleWindow, boolean staleWhileRevalidate) {
+        this.freshNanos = freshTtl.toNanos();
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        long positiveNanos = freshNanos + (staleWhileRevalidate ? staleWindow.toNanos() : 0);
+        long negativeNanos = negativeTtl.toNanos();
+
+        // Le ricerche senza risultati scadono prima: spesso sono query ancora in digitazione
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfter(new Expiry<String, Entry>() {
+                @Override
+                public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                    return entry.results.isEmpty() ? negativeNanos : positiveNanos;
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, entry, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats(() -> statsCounter)
+            .buildAsync();
+    }
+
+    public static SearchCache fromConfig() {
+        SearchCache searchCache = new SearchCache(
+            AppConfig.getLong("wiki.cache.search.maxEntries", 10_000),
+            Duration.ofSeconds(AppConfig.getLong("wiki.cache.search.ttlSeconds", 60)),
+            Duration.ofSeconds(AppConfig.getLong("wiki.cache.search.negativeTtlSeconds", 10)),
+            Duration.ofSeconds(AppConfig.getLong("wiki.cache.search.staleSeconds", 300)),
+            AppConfig.getBoolean("wiki.cache.search.staleWhileRevalidate", true));
+        Metrics.monitor(searchCache.cache, "search");
+        return searchCache;
+    }
+
+    @FunctionalInterface
+    public interface Loader {
+        List<WikiSearchResult> load(String query, int limit) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface AsyncLoader {
+        CompletableFuture<List<WikiSearchResult>> load(String query, int limit);
+    }
+
+    // Single-flight come in ArticleCache: chi installa il future interroga Wikipedia, gli altri attendono
+    // lo stesso risultato e poi ricontrollano se copre il loro limit
+    public List<WikiSearchResult> get(String query, int limit, Loader loader) throws Exception {
+        String key = normalizeQuery(query);
+        for (;;) {
+            CompletableFuture<Entry> current = cache.asMap().get(key);
+            Entry entry = current != null ? await(current) : null;
+            if (entry != null && entry.covers(limit)) {
+                statsCounter.recordHits(1);
+                return hit(key, query, current, entry, limit, fetchLimit ->
+                    CompletableFuture.supplyAsync(() -> loadUnchecked(loader, query, fetchLimit), REFRESH_EXECUTOR));
+            }
+
+            CompletableFuture<Entry> pending = new CompletableFuture<>();
+            if (!claim(key, current, pending)) {
+                continue;
+            }
+            statsCounter.recordMisses(1);
+            int fetchLimit = fetchLimit(entry, limit);
+            List<WikiSearchResult> results;
+            try {
+                results = loader.load(query, fetchLimit);
+            } catch (Exception e) {
+                settle(key, pending, entry, null, fetchLimit, e);
+                throw e;
+            }
+            settle(key, pending, entry, results, fetchLimit, null);
+            return pending.join().slice(limit);
+        }
+    }
+
+    public CompletableFuture<List<WikiSearchResult>> getAsync(String query, int limit, AsyncLoader loader) {
+        String key = normalizeQuery(query);
+        CompletableFuture<Entry> current = cache.asMap().get(key);
+        if (current != null && !current.isDone()) {
+            return current.thenCompose(loaded -> getAsync(query, limit, loader));
+        }
+        Entry entry = current != null && !current.isCompletedExceptionally() ? current.join() : null;
+        if (entry != null && entry.covers(limit)) {
+            statsCounter.recordHits(1);
+            return CompletableFuture.completedFuture(
+                hit(key, query, current, entry, limit, fetchLimit -> loader.load(query, fetchLimit)));
+        }
+
+        CompletableFuture<Entry> pending = new CompletableFuture<>();
+        if (!claim(key, current, pending)) {
+            return getAsync(query, limit, loader);
+        }
+        statsCounter.recordMisses(1);
+        int fetchLimit = fetchLimit(entry, limit);
+        CompletableFuture<List<WikiSearchResult>> load;
+        try {
+            load = loader.load(query, fetchLimit);
+        } catch (RuntimeException e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        return load
+            .whenComplete((results, error) -> settle(key, pending, entry, results, fetchLimit, error))
+            .thenApply(results -> pending.join().slice(limit));
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.synchronous().stats();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("staleHits", staleHits.sum());
+        result.put("backgroundRefreshes", refreshes.sum());
+        result.put("entries", cache.synchronous().estimatedSize());
+        return result;
+    }
+
+    public static String normalizeQuery(String query) {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    // Una richiesta con limit=5 si risponde con i primi 5 risultati di una ricerca con limit=20
+    private List<WikiSearchResult> hit(String key, String query, CompletableFuture<Entry> current, Entry entry,
+                                       int limit, IntFunction<CompletableFuture<List<WikiSearchResult>>> refresher) {
+        if (staleWhileRevalidate && entry.isStale(freshNanos)) {
+            staleHits.increment();
+            refreshInBackground(key, query, current, entry.fetchedLimit, refresher);
+        }
+        return entry.slice(limit);
+    }
+
+    private static int fetchLimit(Entry entry, int limit) {
+        return entry != null ? Math.max(limit, entry.fetchedLimit) : limit;
+    }
+
+    // Installa il caricamento al posto della voce letta (assente o con meno risultati del necessario);
+    // false se nel frattempo un altro chiamante l'ha già sostituita
+    private boolean claim(String key, CompletableFuture<Entry> current, CompletableFuture<Entry> pending) {
+        return current == null
+            ? cache.asMap().putIfAbsent(key, pending) == null
+            : cache.asMap().replace(key, current, pending);
+    }
+
+    // Se il caricamento fallisce resta la voce precedente, altrimenti la chiave si libera
+    // e l'errore arriva anche a chi stava aspettando
+    private void settle(String key, CompletableFuture<Entry> pending, Entry previous,
+                        List<WikiSearchResult> results, int fetchLimit, Throwable error) {
+        if (error == null) {
+            pending.complete(new Entry(results, fetchLimit));
+        } else if (previous != null) {
+            pending.complete(previous);
+        } else {
+            cache.asMap().remove(key, pending);
+            pending.completeExceptionally(error);
+        }
+    }
+
+    private void refreshInBackground(String key, String query, CompletableFuture<Entry> current, int limit,
+                                     IntFunction<CompletableFuture<List<WikiSearchResult>>> refresher) {
+        // Un solo refresh in corso per chiave, anche se arrivano molte richieste sulla voce scaduta
+        if (!refreshing.add(key)) {
+            return;
+        }
+        CompletableFuture<List<WikiSearchResult>> refresh;
+        try {
+            refresh = refresher.apply(limit);
+        } catch (RuntimeException e) {
+            refreshing.remove(key);
+            throw e;
+        }
+        refresh.whenComplete((results, error) -> {
+            // Non sovrascrive una voce ricaricata nel frattempo con un limit più alto
+            if (error == null) {
+                if (cache.asMap().replace(key, current, CompletableFuture.completedFuture(new Entry(results, limit)))) {
+                    refreshes.increment();
+                }
+            } else {
+                logger.warn("Background refresh failed for query '{}': {}", query, error.getMessage());
+            }
+            refreshing.remove(key);
+        });
+    }
+
+    private static Entry await(CompletableFuture<Entry> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static List<WikiSearchResult> loadUnchecked(Loader loader, String query, int limit) {
+        try {
+            return loader.load(query, limit);
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static final class Entry {
+        final List<WikiSearchResult> results;
+        final int fetchedLimit;
+        final long fetchedAt;
+
+        Entry(List<WikiSearchResult> results, int fetchedLimit) {
+            this.results = List.copyOf(results);
+            this.fetchedLimit = fetchedLimit;
+            this.fetchedAt = System.nanoTime();
+        }
+
+        // Se Wikipedia ha restituito meno risultati del limite, la lista è completa per qualsiasi limit
+        boolean covers(int limit) {
+            return limit <= fetchedLimit || results.size() < fetchedLimit;
+        }
+
+        boolean isStale(long freshNanos) {
+            return System.nanoTime() - fetchedAt > freshNanos;
+        }
+
+        List<WikiSearchResult> slice(int limit) {
+            int size = Math.min(limit, results.size());
+            List<WikiSearchResult> copy = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                WikiSearchResult result = results.get(i);
+                copy.add(new WikiSearchResult(result.getTitle(), result.getExcerpt(), result.getPageId(), result.getUrl()));
+            }
+            return copy;
+        }
+    }
+}
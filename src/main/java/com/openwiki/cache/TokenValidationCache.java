@@ -0,0 +1,99 @@
+package com.openwiki.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.openwiki.config.AppConfig;
+import com.openwiki.metrics.Metrics;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public class TokenValidationCache {
+    private final AsyncCache<String, Boolean> cache;
+
+    public TokenValidationCache(long maxEntries, Duration positiveTtl, Duration negativeTtl) {
+        long positiveNanos = positiveTtl.toNanos();
+        long negativeNanos = negativeTtl.toNanos();
+
+        // Un token rifiutato scade prima: se l'utente rifà il login non deve attendere il TTL positivo
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfter(new Expiry<String, Boolean>() {
+                @Override
+                public long expireAfterCreate(String key, Boolean valid, long currentTime) {
+                    return valid ? positiveNanos : negativeNanos;
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, Boolean valid, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, valid, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String key, Boolean valid, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .buildAsync();
+    }
+
+    public static TokenValidationCache fromConfig() {
+        TokenValidationCache validationCache = new TokenValidationCache(
+            AppConfig.getLong("auth.cache.maxEntries", 10_000),
+            Duration.ofSeconds(AppConfig.getLong("auth.cache.positiveTtlSeconds", 60)),
+            Duration.ofSeconds(AppConfig.getLong("auth.cache.negativeTtlSeconds", 5)));
+        Metrics.monitor(validationCache.cache, "tokenValidation");
+        return validationCache;
+    }
+
+    @FunctionalInterface
+    public interface Validator {
+        CompletableFuture<Boolean> validate(String token);
+    }
+
+    // Le validazioni concorrenti dello stesso token condividono la stessa chiamata al servizio Flask;
+    // un errore di rete non viene messo in cache (Caffeine scarta i future completati con errore)
+    public CompletableFuture<Boolean> validate(String kind, String token, Validator validator) {
+        return cache.get(keyOf(kind, token), (key, executor) -> validator.validate(token));
+    }
+
+    public void invalidate(String kind, String token) {
+        cache.synchronous().invalidate(keyOf(kind, token));
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.synchronous().stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("loadFailures", stats.loadFailureCount());
+        result.put("entries", cache.synchronous().estimatedSize());
+        return result;
+    }
+
+    // In memoria resta solo l'hash: un dump dell'heap non espone token e cookie di sessione
+    static String keyOf(String kind, String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(kind.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return Base64.getEncoder().withoutPadding()
+                .encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
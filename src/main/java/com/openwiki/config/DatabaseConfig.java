@@ -1,28 +1,31 @@
 package com.openwiki.config;
 
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.io.IOException;
-import java.util.Properties;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class DatabaseConfig {
-    private static Properties props;
-    
-    static {
-        props = new Properties();
-        try {
-            props.load(DatabaseConfig.class.getClassLoader().getResourceAsStream("config.properties"));
-        } catch (IOException e) {
-            throw new RuntimeException("Impossibile caricare config.properties", e);
-        }
+    // Stesso pool di Hibernate: niente più una connessione DriverManager nuova per ogni chiamata
+    public static Connection getConnection() throws SQLException {
+        return HibernateConfig.getDataSource().getConnection();
     }
 
-    public static Connection getConnection() throws SQLException {
-        String url = props.getProperty("db.url");
-        String username = props.getProperty("db.username");
-        String password = props.getProperty("db.password");
-        
-        return DriverManager.getConnection(url, username, password);
+    public static Map<String, Object> poolStats() {
+        HikariDataSource dataSource = HibernateConfig.getDataSource();
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pool", dataSource.getPoolName());
+        stats.put("active", pool.getActiveConnections());
+        stats.put("idle", pool.getIdleConnections());
+        stats.put("total", pool.getTotalConnections());
+        stats.put("threadsAwaiting", pool.getThreadsAwaitingConnection());
+        stats.put("minimumIdle", dataSource.getMinimumIdle());
+        stats.put("maximumPoolSize", dataSource.getMaximumPoolSize());
+        stats.put("leakDetectionThresholdMillis", dataSource.getLeakDetectionThreshold());
+        return stats;
     }
-} 
\ No newline at end of file
+}
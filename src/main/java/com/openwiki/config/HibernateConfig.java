@@ -1,19 +1,108 @@
 package com.openwiki.config;
 
+import com.zaxxer.hikari.HikariDataSource;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Persistence;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class HibernateConfig {
-    private static final EntityManagerFactory emf = Persistence.createEntityManagerFactory("openwikiPU");
+    private static final EntityManagerFactory emf = Persistence.createEntityManagerFactory("openwikiPU", overrides());
     
     public static EntityManager getEntityManager() {
         return emf.createEntityManager();
     }
     
+    // Sessione senza contesto di persistenza né cache di secondo livello, per letture in streaming
+    public static StatelessSession openStatelessSession() {
+        return emf.unwrap(SessionFactory.class).openStatelessSession();
+    }
+
+    // Per le scritture fatte in JDBC, che Hibernate non vede
+    public static void evictQueryRegion(String region) {
+        emf.unwrap(SessionFactory.class).getCache().evictQueryRegion(region);
+    }
+
+    public static void evictEntity(Class<?> entityClass, Object id) {
+        emf.getCache().evict(entityClass, id);
+    }
+
+    // Il pool HikariCP creato da Hibernate, esposto per l'accesso JDBC diretto
+    public static HikariDataSource getDataSource() {
+        return emf.unwrap(SessionFactoryImplementor.class)
+            .getServiceRegistry()
+            .requireService(ConnectionProvider.class)
+            .unwrap(HikariDataSource.class);
+    }
+
+    // Contatori della cache di secondo livello e della cache delle query, per dimensionare le regioni
+    public static Map<String, Object> cacheStats() {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", statistics.isStatisticsEnabled());
+        result.put("secondLevelHits", statistics.getSecondLevelCacheHitCount());
+        result.put("secondLevelMisses", statistics.getSecondLevelCacheMissCount());
+        result.put("secondLevelPuts", statistics.getSecondLevelCachePutCount());
+        result.put("queryHits", statistics.getQueryCacheHitCount());
+        result.put("queryMisses", statistics.getQueryCacheMissCount());
+        result.put("queryPuts", statistics.getQueryCachePutCount());
+
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region = statistics.getCacheRegionStatistics(regionName);
+            if (region == null) {
+                continue;
+            }
+            Map<String, Object> regionStats = new LinkedHashMap<>();
+            regionStats.put("hits", region.getHitCount());
+            regionStats.put("misses", region.getMissCount());
+            regionStats.put("puts", region.getPutCount());
+            regionStats.put("entries", region.getElementCountInMemory());
+            regions.put(regionName, regionStats);
+        }
+        result.put("regions", regions);
+        return result;
+    }
+
     public static void closeEntityManagerFactory() {
         if (emf != null && emf.isOpen()) {
             emf.close();
         }
     }
-} 
\ No newline at end of file
+
+    // Le proprietà db.* (system property, env o config.properties) hanno precedenza su persistence.xml
+    private static Map<String, Object> overrides() {
+        Map<String, Object> props = new HashMap<>();
+        putIfSet(props, "jakarta.persistence.jdbc.url", "db.url");
+        putIfSet(props, "jakarta.persistence.jdbc.user", "db.username");
+        putIfSet(props, "jakarta.persistence.jdbc.password", "db.password");
+        putIfSet(props, "jakarta.persistence.jdbc.driver", "db.driver");
+        putIfSet(props, "hibernate.dialect", "db.dialect");
+        putIfSet(props, "hibernate.hbm2ddl.auto", "db.schemaAction");
+        putIfSet(props, "hibernate.cache.use_second_level_cache", "db.cache.enabled");
+        putIfSet(props, "hibernate.cache.use_query_cache", "db.cache.enabled");
+        putIfSet(props, "hibernate.show_sql", "db.showSql");
+        putIfSet(props, "hibernate.jdbc.batch_size", "db.batchSize");
+        putIfSet(props, "hibernate.hikari.minimumIdle", "db.pool.minIdle");
+        putIfSet(props, "hibernate.hikari.maximumPoolSize", "db.pool.maxSize");
+        putIfSet(props, "hibernate.hikari.connectionTimeout", "db.pool.connectionTimeoutMillis");
+        putIfSet(props, "hibernate.hikari.leakDetectionThreshold", "db.pool.leakDetectionMillis");
+        return props;
+    }
+
+    private static void putIfSet(Map<String, Object> props, String property, String key) {
+        String value = AppConfig.get(key, null);
+        if (value != null) {
+            props.put(property, value);
+        }
+    }
+}
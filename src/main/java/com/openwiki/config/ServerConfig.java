@@ -0,0 +1,62 @@
+package com.openwiki.config;
+
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.javalin.compression.Brotli;
+import io.javalin.compression.CompressionStrategy;
+import io.javalin.compression.Gzip;
+import io.javalin.config.JavalinConfig;
+import io.javalin.json.JavalinJackson;
+import io.javalin.util.ConcurrencyUtil;
+import io.javalin.util.LoomUtil;
+import java.util.concurrent.ExecutorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ServerConfig {
+    private static final Logger logger = LoggerFactory.getLogger(ServerConfig.class);
+
+    private static volatile boolean virtualThreads = AppConfig.getBoolean("server.virtualThreads", false);
+
+    // I virtual thread richiedono JDK 21: su JDK precedenti si resta sui thread di piattaforma
+    public static boolean useVirtualThreads() {
+        return virtualThreads && ConcurrencyUtil.isLoomAvailable();
+    }
+
+    public static void setVirtualThreads(boolean enabled) {
+        virtualThreads = enabled;
+    }
+
+    // Da chiamare prima di app.start(): Javalin legge il flag quando crea il pool di Jetty
+    public static void applyThreadingMode() {
+        if (virtualThreads && !ConcurrencyUtil.isLoomAvailable()) {
+            logger.warn("server.virtualThreads=true but this JDK has no virtual threads, using platform threads");
+        }
+        ConcurrencyUtil.INSTANCE.setUseLoom(useVirtualThreads());
+        logger.info("Serving requests on {} threads", useVirtualThreads() ? "virtual" : "platform");
+    }
+
+    // Brotli se il client lo accetta, altrimenti gzip; sotto minBytes la compressione costa più di quanto risparmia.
+    // Se la libreria nativa di brotli4j non si carica Javalin lo segnala e resta solo gzip
+    public static void applyCompression(JavalinConfig config) {
+        if (!AppConfig.getBoolean("server.compression.enabled", true)) {
+            config.compression.none();
+            return;
+        }
+        Brotli brotli = AppConfig.getBoolean("server.compression.brotli", true)
+            ? new Brotli(AppConfig.getInt("server.compression.brotliLevel", 4)) : null;
+        CompressionStrategy strategy = new CompressionStrategy(brotli,
+            new Gzip(AppConfig.getInt("server.compression.gzipLevel", 6)));
+        strategy.setMinSizeForCompression(AppConfig.getInt("server.compression.minBytes", 1024));
+        config.compression.custom(strategy);
+    }
+
+    // Mapper JSON delle risposte, con il supporto a LocalDateTime; lo usano anche i benchmark di serializzazione
+    public static JavalinJackson jsonMapper() {
+        return new JavalinJackson().updateMapper(mapper -> mapper.registerModule(new JavaTimeModule()));
+    }
+
+    // Executor per le chiamate HTTP in uscita: null lascia quello di default di HttpClient
+    public static ExecutorService upstreamExecutor(String name) {
+        return useVirtualThreads() ? LoomUtil.INSTANCE.getExecutorService(name) : null;
+    }
+}
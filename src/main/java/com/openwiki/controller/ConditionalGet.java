@@ -0,0 +1,99 @@
+package com.openwiki.controller;
+
+import com.openwiki.model.Article;
+import io.javalin.http.Context;
+import io.javalin.http.HttpStatus;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Locale;
+
+// ETag e Last-Modified degli articoli calcolati senza serializzare: il 304 parte prima di ctx.json
+public final class ConditionalGet {
+    // IMF-fixdate (RFC 7231): giorno sempre a due cifre, RFC_1123_DATE_TIME scriverebbe "2 Nov"
+    private static final DateTimeFormatter HTTP_DATE =
+        DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.ENGLISH).withZone(ZoneOffset.UTC);
+
+    private ConditionalGet() {
+    }
+
+    // Articoli salvati: id e version cambiano a ogni scrittura. Wikipedia: pageid e lastrevid.
+    // In mancanza di entrambi si usa l'hash del testo, che String tiene in cache e l'ArticleCache condivide tra le copie
+    public static String etag(Article article) {
+        if (article.getId() != null && article.getVersion() != null) {
+            return "\"a" + article.getId() + "-v" + article.getVersion() + "\"";
+        }
+        if (article.getPageId() != null && !article.getPageId().isEmpty() && article.getRevision() != null) {
+            return "\"w" + article.getPageId() + "-r" + article.getRevision() + "\"";
+        }
+        return "\"h" + Integer.toHexString(hash(article.getTitle())) + "-" + Integer.toHexString(hash(article.getContent()))
+            + "-" + (article.getContent() != null ? article.getContent().length() : 0) + "\"";
+    }
+
+    // L'elenco cambia se cambia uno qualsiasi degli articoli, il loro numero o il loro ordine
+    public static String etag(List<Article> articles) {
+        long hash = 17;
+        for (Article article : articles) {
+            hash = 31 * hash + etag(article).hashCode();
+        }
+        return "\"l" + articles.size() + "-" + Long.toHexString(hash) + "\"";
+    }
+
+    // Wikipedia: touched di prop=info. Articoli salvati: updated_at, che cambia a ogni PUT (date_downloaded no)
+    public static Instant lastModified(Article article) {
+        if (article.getTouched() != null) {
+            return article.getTouched();
+        }
+        return article.getUpdatedAt() != null ? article.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant() : null;
+    }
+
+    public static Instant lastModified(List<Article> articles) {
+        Instant latest = null;
+        for (Article article : articles) {
+            Instant modified = lastModified(article);
+            if (modified != null && (latest == null || modified.isAfter(latest))) {
+                latest = modified;
+            }
+        }
+        return latest;
+    }
+
+    // Imposta gli header di validazione; true se il client ha già questa versione e la risposta è un 304.
+    // L'ETag è debole: la stessa rappresentazione esce in chiaro, gzip o br a seconda di Accept-Encoding
+    public static boolean notModified(Context ctx, String etag, Instant lastModified, boolean privateData) {
+        ctx.header("ETag", "W/" + etag);
+        ctx.header("Vary", "Accept-Encoding");
+        if (lastModified != null) {
+            ctx.header("Last-Modified", HTTP_DATE.format(lastModified));
+        }
+        ctx.header("Cache-Control", privateData ? "private, no-cache" : "no-cache");
+        if (matches(ctx.header("If-None-Match"), etag)) {
+            ctx.status(HttpStatus.NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            // If-None-Match usa il confronto debole: W/"x" vale quanto "x"
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int hash(String value) {
+        return value != null ? value.hashCode() : 0;
+    }
+}
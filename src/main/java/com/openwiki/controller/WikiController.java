@@ -1,27 +1,58 @@
 package com.openwiki.controller;
 import io.javalin.http.Context;
+import io.javalin.json.JsonMapper;
+import io.javalin.json.JsonMapperKt;
+import com.openwiki.config.AppConfig;
+import com.openwiki.config.ServerConfig;
+import com.openwiki.http.UpstreamUnavailableException;
 import com.openwiki.service.WikiService;
+import com.openwiki.dao.ArticleBatchWriter;
 import com.openwiki.dao.ArticleDAO;
 import com.openwiki.model.Article;
+import com.openwiki.model.SearchHit;
+import com.openwiki.middleware.RequestLogging;
 import java.util.Map;
 import java.util.List;
-import java.util.Base64;
+import java.util.Optional;
+import java.util.ArrayList;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 public class WikiController {
     private final WikiService wikiService;
     private final ArticleDAO articleDAO;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private static final Logger logger = LoggerFactory.getLogger(WikiController.class);
+    private static final int MAX_BATCH_TITLES = AppConfig.getInt("wiki.batch.maxTitles", 200);
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_IMPORT_ARTICLES = AppConfig.getInt("articles.import.maxArticles", 10_000);
+    private static final String NDJSON = "application/x-ndjson";
 
     public WikiController() {
-        this.wikiService = new WikiService();
-        this.articleDAO = new ArticleDAO();
+        this(new WikiService(), new ArticleDAO());
+    }
+
+    public WikiController(WikiService wikiService, ArticleDAO articleDAO) {
+        this.wikiService = wikiService;
+        this.articleDAO = articleDAO;
     }
 
     public void search(Context ctx) {
@@ -34,48 +65,60 @@ public class WikiController {
                 return;
             }
 
-            ctx.json(wikiService.search(query, limit));
+            respond(ctx, () -> wikiService.searchAsync(query, limit), () -> wikiService.search(query, limit),
+                ctx::json,
+                e -> ctx.status(upstreamStatus(e)).json(Map.of("error", "Search failed: " + e.getMessage())));
         } catch (Exception e) {
             ctx.status(500).json(Map.of("error", "Search failed: " + e.getMessage()));
         }
     }
 
     public void getArticle(Context ctx) {
+        String title = ctx.pathParam("title");
+        respond(ctx, () -> wikiService.getArticleAsync(title), () -> wikiService.getArticle(title),
+            article -> {
+                if (!ConditionalGet.notModified(ctx, ConditionalGet.etag(article), ConditionalGet.lastModified(article), false)) {
+                    ctx.json(article);
+                }
+            },
+            e -> ctx.status(upstreamStatus(e)).json(Map.of("error", "Failed to get article: " + e.getMessage())));
+    }
+
+    public void getArticles(Context ctx) {
+        List<String> titles;
         try {
-            String title = ctx.pathParam("title");
-            Article article = wikiService.getArticle(title);
-            
-            ctx.json(article);
+            titles = parseTitles(ctx.body());
         } catch (Exception e) {
-            ctx.status(500).json(Map.of("error", "Failed to get article: " + e.getMessage()));
+            ctx.status(400).json(Map.of("error", "Invalid request body: " + e.getMessage()));
+            return;
+        }
+        if (titles.isEmpty()) {
+            ctx.status(400).json(Map.of("error", "At least one title is required"));
+            return;
         }
+        if (titles.size() > MAX_BATCH_TITLES) {
+            ctx.status(400).json(Map.of("error", "Too many titles, maximum is " + MAX_BATCH_TITLES));
+            return;
+        }
+
+        respond(ctx, () -> wikiService.getArticlesAsync(titles), () -> wikiService.getArticles(titles),
+            ctx::json,
+            e -> ctx.status(upstreamStatus(e)).json(Map.of("error", "Failed to get articles: " + e.getMessage())));
+    }
+
+    public void getCacheStats(Context ctx) {
+        ctx.json(wikiService.getCacheStats());
     }
 
     public void saveArticle(Context ctx) {
         try {
             String requestBody = ctx.body();
-            logger.info("Received request body: {}", requestBody);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Received request body: {}", RequestLogging.truncate(requestBody));
+            }
             
             JsonNode jsonNode = objectMapper.readTree(requestBody);
-            
-            Article article = new Article();
-            article.setTitle(jsonNode.get("title").asText());
-            article.setContent(jsonNode.get("content").asText());
-            
-            // Gestisci entrambi i formati (camelCase e snake_case)
-            String imageUrl = jsonNode.has("imageUrl") ? jsonNode.get("imageUrl").asText() :
-                             jsonNode.has("image_url") ? jsonNode.get("image_url").asText() : null;
-            String pageId = jsonNode.has("pageId") ? jsonNode.get("pageId").asText() :
-                           jsonNode.has("page_id") ? jsonNode.get("page_id").asText() : null;
-            String wikiUrl = jsonNode.has("wikiUrl") ? jsonNode.get("wikiUrl").asText() :
-                            jsonNode.has("wiki_url") ? jsonNode.get("wiki_url").asText() : null;
-            
-            article.setImageUrl(imageUrl);
-            article.setPageId(pageId);
-            article.setWikiUrl(wikiUrl);
-            
-            String userId = extractUserId(ctx);
-            article.setUserId(userId);
+            Article article = articleFromJson(jsonNode, ctx.attribute("userId"));
             article.setDateDownloaded(LocalDateTime.now());
             
             Article savedArticle = articleDAO.save(article);
@@ -87,42 +130,179 @@ public class WikiController {
         }
     }
 
+    // Import massivo: array JSON oppure NDJSON (un oggetto per riga), letto in streaming e salvato
+    // a batch; i batch già confermati restano anche se un elemento successivo è invalido
+    public void importArticles(Context ctx) {
+        String userId = ctx.attribute("userId");
+        int position = 0;
+        try (ArticleBatchWriter writer = articleDAO.batchWriter();
+             JsonParser parser = objectMapper.getFactory().createParser(ctx.bodyInputStream())) {
+            try {
+                JsonToken first = parser.nextToken();
+                // In un array si leggono gli elementi; altrimenti i valori di primo livello in sequenza (NDJSON)
+                boolean array = first == JsonToken.START_ARRAY;
+                JsonToken token = array ? parser.nextToken() : first;
+                while (token != null && token != JsonToken.END_ARRAY) {
+                    if (position >= MAX_IMPORT_ARTICLES) {
+                        writer.flush();
+                        ctx.status(413).json(Map.of("error", "Too many articles, maximum is " + MAX_IMPORT_ARTICLES,
+                            "imported", writer.getCommitted()));
+                        return;
+                    }
+                    JsonNode node = objectMapper.readTree(parser);
+                    if (!node.isObject() || node.path("title").asText("").isBlank()) {
+                        writer.flush();
+                        ctx.status(400).json(Map.of("error", "Invalid article at position " + position,
+                            "imported", writer.getCommitted()));
+                        return;
+                    }
+                    Article article = articleFromJson(node, userId);
+                    JsonNode date = node.has("dateDownloaded") ? node.get("dateDownloaded") : node.get("date_downloaded");
+                    article.setDateDownloaded(date != null && date.isTextual()
+                        ? LocalDateTime.parse(date.asText()) : LocalDateTime.now());
+                    writer.add(article);
+                    position++;
+                    token = parser.nextToken();
+                }
+                writer.flush();
+                logger.info("Imported {} articles for user {}", writer.getCommitted(), userId);
+                ctx.status(201).json(Map.of("imported", writer.getCommitted()));
+            } catch (IOException | DateTimeParseException e) {
+                writer.flush();
+                ctx.status(400).json(Map.of("error", "Invalid article at position " + position + ": " + e.getMessage(),
+                    "imported", writer.getCommitted()));
+            }
+        } catch (Exception e) {
+            logger.error("Failed to import articles: {}", e.getMessage(), e);
+            ctx.status(500).json(Map.of("error", "Failed to import articles: " + e.getMessage()));
+        }
+    }
+
+    // Export NDJSON: ogni articolo viene scritto sulla risposta appena letto dal database
+    public void exportArticles(Context ctx) {
+        ctx.header("Content-Disposition", "attachment; filename=\"articles.ndjson\"");
+        streamUserArticles(ctx);
+    }
+
     public void getUserArticles(Context ctx) {
+        if (wantsNdjson(ctx)) {
+            streamUserArticles(ctx);
+            return;
+        }
         try {
-            String userId = extractUserId(ctx);
-            logger.info("Fetching articles for user {}", userId);
+            String userId = ctx.attribute("userId");
+            logger.debug("Fetching articles for user {}", userId);
             List<Article> articles = articleDAO.findByUserId(userId);
-            ctx.json(articles);
+            if (!ConditionalGet.notModified(ctx, ConditionalGet.etag(articles), ConditionalGet.lastModified(articles), true)) {
+                ctx.json(articles);
+            }
         } catch (Exception e) {
             logger.error("Failed to get user articles: {}", e.getMessage(), e);
             ctx.status(500).json(Map.of("error", "Failed to get user articles: " + e.getMessage()));
         }
     }
 
-    public void getFeaturedArticle(Context ctx) {
+    // Modalità streaming (Accept: application/x-ndjson o ?format=ndjson): un articolo per riga,
+    // scritto appena letto, quindi la memoria non cresce con la dimensione della libreria
+    private void streamUserArticles(Context ctx) {
+        String userId = ctx.attribute("userId");
+        logger.debug("Streaming articles for user {}", userId);
+        ctx.contentType(NDJSON);
+        try (Stream<Article> articles = articleDAO.streamByUserId(userId)) {
+            writeNdjson(ctx, articles);
+        } catch (Exception e) {
+            // Con la risposta già iniziata non si può più cambiare lo stato: l'errore chiude la connessione
+            logger.error("Failed to stream user articles: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to stream user articles: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean wantsNdjson(Context ctx) {
+        String accept = ctx.header("Accept");
+        return "ndjson".equals(ctx.queryParam("format")) || (accept != null && accept.contains(NDJSON));
+    }
+
+    public void getUserArticleSummaries(Context ctx) {
         try {
-            Article article = wikiService.getFeaturedArticle();
-            
-            // Assicurati che l'URL dell'immagine sia completo
-            if (article.getImageUrl() != null && article.getImageUrl().startsWith("//")) {
-                article.setImageUrl("https:" + article.getImageUrl());
+            String userId = ctx.attribute("userId");
+            int limit = ctx.queryParamAsClass("limit", Integer.class).getOrDefault(DEFAULT_PAGE_SIZE);
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                ctx.status(400).json(Map.of("error", "limit must be between 1 and " + MAX_PAGE_SIZE));
+                return;
             }
-            
-            // Log per debug
-            logger.info("Featured article fields - imageUrl: {}, pageId: {}, wikiUrl: {}", 
-                       article.getImageUrl(), article.getPageId(), article.getWikiUrl());
-            
-            ctx.json(article);
+            ctx.json(articleDAO.findSummariesByUserId(userId, ctx.queryParam("cursor"), limit));
+        } catch (IllegalArgumentException e) {
+            ctx.status(400).json(Map.of("error", "Invalid cursor"));
+        } catch (Exception e) {
+            logger.error("Failed to list user articles: {}", e.getMessage(), e);
+            ctx.status(500).json(Map.of("error", "Failed to list user articles: " + e.getMessage()));
+        }
+    }
+
+    public void searchUserArticles(Context ctx) {
+        try {
+            String userId = ctx.attribute("userId");
+            String query = ctx.queryParam("q");
+            int limit = ctx.queryParamAsClass("limit", Integer.class).getOrDefault(DEFAULT_PAGE_SIZE);
+            if (query == null || query.isBlank()) {
+                ctx.status(400).json(Map.of("error", "Query parameter q is required"));
+                return;
+            }
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                ctx.status(400).json(Map.of("error", "limit must be between 1 and " + MAX_PAGE_SIZE));
+                return;
+            }
+            long start = System.nanoTime();
+            List<SearchHit> hits = articleDAO.search(userId, query, limit);
+            ctx.json(Map.of("query", query, "hits", hits, "tookMicros", (System.nanoTime() - start) / 1000));
         } catch (Exception e) {
-            logger.error("Failed to get featured article: {}", e.getMessage(), e);
-            ctx.status(500).json(Map.of("error", "Failed to get featured article: " + e.getMessage()));
+            logger.error("Failed to search user articles: {}", e.getMessage(), e);
+            ctx.status(500).json(Map.of("error", "Failed to search user articles: " + e.getMessage()));
         }
     }
 
+    public void getUserArticle(Context ctx) {
+        try {
+            String userId = ctx.attribute("userId");
+            Optional<Article> article = articleDAO.findByIdForUser(ctx.pathParam("id"), userId);
+            if (article.isPresent()) {
+                Article found = article.get();
+                if (!ConditionalGet.notModified(ctx, ConditionalGet.etag(found), ConditionalGet.lastModified(found), true)) {
+                    ctx.json(found);
+                }
+            } else {
+                ctx.status(404).json(Map.of("error", "Article not found"));
+            }
+        } catch (Exception e) {
+            logger.error("Failed to get article: {}", e.getMessage(), e);
+            ctx.status(500).json(Map.of("error", "Failed to get article: " + e.getMessage()));
+        }
+    }
+
+    public void getFeaturedArticle(Context ctx) {
+        respond(ctx, wikiService::getFeaturedArticleAsync, wikiService::getFeaturedArticle,
+            article -> {
+                // Assicurati che l'URL dell'immagine sia completo
+                if (article.getImageUrl() != null && article.getImageUrl().startsWith("//")) {
+                    article.setImageUrl("https:" + article.getImageUrl());
+                }
+
+                // Log per debug
+                logger.debug("Featured article fields - imageUrl: {}, pageId: {}, wikiUrl: {}",
+                           article.getImageUrl(), article.getPageId(), article.getWikiUrl());
+
+                ctx.json(article);
+            },
+            e -> {
+                logger.error("Failed to get featured article: {}", e.getMessage(), e);
+                ctx.status(upstreamStatus(e)).json(Map.of("error", "Failed to get featured article: " + e.getMessage()));
+            });
+    }
+
     public void deleteArticle(Context ctx) {
         try {
             String articleId = ctx.pathParam("id");
-            String userId = extractUserId(ctx);
+            String userId = ctx.attribute("userId");
             logger.info("Deleting article {} for user {}", articleId, userId);
             boolean deleted = articleDAO.deleteArticle(articleId, userId);
             if (deleted) {
@@ -142,58 +322,115 @@ public class WikiController {
         try {
             String articleId = ctx.pathParam("id");
             Article article = ctx.bodyAsClass(Article.class);
-            String userId = extractUserId(ctx);
+            String userId = ctx.attribute("userId");
             
             article.setId(articleId);
             article.setUserId(userId);
             
-            boolean updated = articleDAO.updateArticle(article);
-            if (updated) {
-                ctx.json(article);
-            } else {
-                ctx.status(404).json(Map.of("error", "Article not found or not owned by user"));
+            // Si aggiornano solo i campi presenti; con "version" la modifica fallisce se qualcuno è arrivato prima
+            switch (articleDAO.updateArticle(article)) {
+                case UPDATED:
+                    // Il body del PUT è parziale: updateArticle lo ha riempito con l'articolo salvato e la nuova versione
+                    ctx.json(article);
+                    break;
+                case CONFLICT:
+                    ctx.status(409).json(Map.of("error", "Article was modified by another request",
+                        "code", "VERSION_CONFLICT"));
+                    break;
+                default:
+                    ctx.status(404).json(Map.of("error", "Article not found or not owned by user"));
             }
             
+        } catch (IllegalArgumentException e) {
+            ctx.status(400).json(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             logger.error("Failed to update article: {}", e.getMessage(), e);
             ctx.status(500).json(Map.of("error", "Failed to update article: " + e.getMessage()));
         }
     }
 
-    private String extractUserId(Context ctx) {
-        try {
-            String sessionCookie = ctx.cookie("session");
-            if (sessionCookie == null) {
-                logger.warn("No session cookie found");
-                return "4";
+    private void writeNdjson(Context ctx, Stream<Article> articles) throws IOException {
+        // Lo stesso mapper di ctx.json, così le date escono nello stesso formato di GET /api/articles
+        JsonMapper jsonMapper = JsonMapperKt.jsonMapper(ctx);
+        OutputStream out = ctx.outputStream();
+        Iterator<Article> iterator = articles.iterator();
+        while (iterator.hasNext()) {
+            out.write(jsonMapper.toJsonString(iterator.next(), Article.class).getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    // Accetta sia camelCase sia snake_case
+    private Article articleFromJson(JsonNode jsonNode, String userId) {
+        Article article = new Article();
+        article.setTitle(jsonNode.get("title").asText());
+        article.setContent(jsonNode.path("content").asText(null));
+        article.setImageUrl(text(jsonNode, "imageUrl", "image_url"));
+        article.setPageId(text(jsonNode, "pageId", "page_id"));
+        article.setWikiUrl(text(jsonNode, "wikiUrl", "wiki_url"));
+        article.setUserId(userId);
+        return article;
+    }
+
+    private static String text(JsonNode jsonNode, String camelCase, String snakeCase) {
+        return jsonNode.has(camelCase) ? jsonNode.get(camelCase).asText() :
+               jsonNode.has(snakeCase) ? jsonNode.get(snakeCase).asText() : null;
+    }
+
+    // Sui thread di piattaforma il thread di Jetty viene rilasciato con ctx.future mentre Wikipedia risponde;
+    // sui virtual thread il codice bloccante scala da solo e mantiene stack trace leggibili
+    private <T> void respond(Context ctx, Supplier<CompletableFuture<T>> async, Callable<T> blocking,
+                             Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        if (ServerConfig.useVirtualThreads()) {
+            T result;
+            try {
+                result = blocking.call();
+            } catch (Exception e) {
+                onError.accept(e);
+                return;
             }
+            onSuccess.accept(result);
+            return;
+        }
+        ctx.future(() -> async.get()
+            .thenAccept(onSuccess)
+            .exceptionally(e -> {
+                onError.accept(rootCause(e));
+                return null;
+            }));
+    }
 
-            // Estrai il payload dal cookie di sessione
-            String[] parts = sessionCookie.split("\\.");
-            if (parts.length < 2) {
-                logger.warn("Invalid session token format");
-                return "4";
+    // Accetta sia ["Roma", "Milano"] sia {"titles": ["Roma", "Milano"]}
+    private List<String> parseTitles(String body) throws Exception {
+        JsonNode json = objectMapper.readTree(body);
+        JsonNode array = json.isArray() ? json : json.path("titles");
+        List<String> titles = new ArrayList<>();
+        for (JsonNode title : array) {
+            if (title.isTextual() && !title.asText().isBlank()) {
+                titles.add(title.asText());
             }
+        }
+        return titles;
+    }
 
-            // Decodifica il payload Base64
-            String payload = parts[0];  // Usa la prima parte invece della seconda
-            byte[] decodedBytes = Base64.getUrlDecoder().decode(payload);
-            String jsonStr = new String(decodedBytes, StandardCharsets.UTF_8);
-            logger.info("Decoded session payload: {}", jsonStr);
-
-            // Usa Jackson per il parsing JSON
-            JsonNode jsonNode = objectMapper.readTree(jsonStr);
-            if (jsonNode.has("user_id")) {
-                String userId = jsonNode.get("user_id").asText();
-                logger.info("Extracted user ID: {}", userId);
-                return userId;
+    // Circuito aperto o bulkhead pieno: 503, così il client sa che può riprovare; timeout verso Wikipedia: 504
+    private static int upstreamStatus(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UpstreamUnavailableException) {
+                return 503;
+            }
+            if (cause instanceof HttpTimeoutException) {
+                return 504;
             }
+        }
+        return 500;
+    }
 
-            logger.warn("Could not find user_id in session payload");
-            return "4";
-        } catch (Exception e) {
-            logger.error("Failed to extract user ID from session cookie: {}", e.getMessage());
-            return "4";
+    private static Throwable rootCause(Throwable e) {
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
         }
+        return e;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,106 @@
+package com.openwiki.dao;
+
+import com.openwiki.config.DatabaseConfig;
+import com.openwiki.config.HibernateConfig;
+import com.openwiki.metrics.Metrics;
+import com.openwiki.model.Article;
+import com.openwiki.model.CompressedTextConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+// Inserimento massivo di articoli con batch JDBC, una transazione ogni batchSize righe.
+// L'id IDENTITY impedisce a Hibernate di raggruppare le INSERT (deve leggere la chiave riga per riga);
+// qui l'AUTO_INCREMENT viene assegnato dal database dentro il batch. Su MySQL conviene
+// rewriteBatchedStatements=true nell'URL, così ogni batch diventa una sola INSERT multi-riga.
+public class ArticleBatchWriter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ArticleBatchWriter.class);
+    // version e updated_at espliciti: i DEFAULT esistono solo negli script sql/, non in uno schema creato da hbm2ddl
+    private static final String INSERT_SQL = "INSERT INTO saved_articles"
+        + " (user_id, title, content_compressed, image_url, page_id, wiki_url, date_downloaded, version, updated_at)"
+        + " VALUES (?, ?, ?, ?, ?, ?, ?, 0, ?)";
+
+    private final Connection connection;
+    private final PreparedStatement statement;
+    private final int batchSize;
+    private final Set<String> userIds = new HashSet<>();
+    private int pending;
+    private int committed;
+
+    ArticleBatchWriter(int batchSize) throws SQLException {
+        this.batchSize = batchSize;
+        this.connection = DatabaseConfig.getConnection();
+        try {
+            connection.setAutoCommit(false);
+            this.statement = connection.prepareStatement(INSERT_SQL);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    public void add(Article article) throws SQLException {
+        statement.setString(1, article.getUserId());
+        statement.setString(2, article.getTitle());
+        statement.setBytes(3, CompressedTextConverter.compress(article.getContent()));
+        statement.setString(4, article.getImageUrl());
+        statement.setString(5, article.getPageId());
+        statement.setString(6, article.getWikiUrl());
+        if (article.getDateDownloaded() != null) {
+            statement.setTimestamp(7, Timestamp.valueOf(article.getDateDownloaded()));
+        } else {
+            statement.setNull(7, Types.TIMESTAMP);
+        }
+        statement.setTimestamp(8, Timestamp.valueOf(LocalDateTime.now()));
+        statement.addBatch();
+        userIds.add(article.getUserId());
+        if (++pending >= batchSize) {
+            flush();
+        }
+    }
+
+    // Esegue e conferma il batch corrente
+    public void flush() throws SQLException {
+        if (pending == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        statement.executeBatch();
+        connection.commit();
+        Metrics.recordDao("importBatch", start);
+        committed += pending;
+        pending = 0;
+        // Le INSERT JDBC non passano da Hibernate: gli elenchi in cache per utente vanno scartati a mano
+        HibernateConfig.evictQueryRegion(ArticleDAO.USER_LISTING_REGION);
+        // Gli id generati non tornano indietro: gli indici di ricerca coinvolti si ricostruiscono
+        userIds.forEach(ArticleDAO.SEARCH_INDEX::invalidate);
+        userIds.clear();
+    }
+
+    // Articoli già confermati sul database
+    public int getCommitted() {
+        return committed;
+    }
+
+    // Il batch non ancora confermato viene annullato: chi chiude senza flush() scarta le righe in sospeso
+    @Override
+    public void close() throws SQLException {
+        try {
+            if (pending > 0) {
+                logger.warn("Rolling back {} uncommitted imported articles", pending);
+                connection.rollback();
+            }
+            statement.close();
+            connection.setAutoCommit(true);
+        } finally {
+            connection.close();
+        }
+    }
+}
@@ -1,25 +1,60 @@
 package com.openwiki.dao;
 
+import com.openwiki.config.AppConfig;
+import com.openwiki.config.DatabaseConfig;
 import com.openwiki.config.HibernateConfig;
+import com.openwiki.metrics.Metrics;
 import com.openwiki.model.Article;
+import com.openwiki.model.ArticlePage;
+import com.openwiki.model.ArticleSummary;
+import com.openwiki.model.CompressedTextConverter;
+import com.openwiki.model.SearchHit;
+import com.openwiki.search.ArticleIndex;
+import jakarta.persistence.EntityGraph;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.TypedQuery;
+import org.hibernate.Session;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.StatelessSession;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.jpa.SpecHints;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class ArticleDAO {
     private static final Logger logger = LoggerFactory.getLogger(ArticleDAO.class);
+    // Regione della cache delle query per gli elenchi per utente; Hibernate la invalida
+    // a ogni scrittura su saved_articles (persist, merge, DELETE HQL)
+    static final String USER_LISTING_REGION = "articles-by-user";
+    private static final int IMPORT_BATCH_SIZE = AppConfig.getInt("articles.import.batchSize", 500);
+    private static final int STREAM_FETCH_SIZE = AppConfig.getInt("articles.stream.fetchSize", 500);
+    // Indice di ricerca condiviso da tutte le istanze: ogni scrittura qui sotto lo tiene allineato
+    static final ArticleIndex SEARCH_INDEX = ArticleIndex.fromConfig(ArticleDAO::openUserStream);
 
     public Article save(Article article) throws Exception {
+        long start = System.nanoTime();
         EntityManager em = HibernateConfig.getEntityManager();
-        logger.info("Saving article with title: {}", article.getTitle());
+        logger.debug("Saving article with title: {}", article.getTitle());
         try {
             em.getTransaction().begin();
             em.persist(article);
             em.getTransaction().commit();
-            logger.info("Article saved successfully with ID: {}", article.getId());
+            logger.debug("Article saved successfully with ID: {}", article.getId());
+            SEARCH_INDEX.put(article);
             return article;
         } catch (Exception e) {
             logger.error("Error saving article: {}", e.getMessage(), e);
@@ -29,32 +64,176 @@ public class ArticleDAO {
             throw e;
         } finally {
             em.close();
+            Metrics.recordDao("save", start);
         }
     }
     
     public Optional<Article> findById(String id) {
+        long start = System.nanoTime();
         EntityManager em = HibernateConfig.getEntityManager();
         try {
             Article article = em.find(Article.class, id);
             return Optional.ofNullable(article);
         } finally {
             em.close();
+            Metrics.recordDao("findById", start);
         }
     }
     
     public List<Article> findByUserId(String userId) {
+        long start = System.nanoTime();
         EntityManager em = HibernateConfig.getEntityManager();
         try {
             TypedQuery<Article> query = em.createQuery(
                 "SELECT a FROM Article a WHERE a.userId = :userId", Article.class);
             query.setParameter("userId", userId);
+            query.setHint(HibernateHints.HINT_READ_ONLY, true);
+            query.setHint(HibernateHints.HINT_CACHEABLE, true);
+            query.setHint(HibernateHints.HINT_CACHE_REGION, USER_LISTING_REGION);
+            query.setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, withContent(em.unwrap(Session.class)));
             return query.getResultList();
         } finally {
             em.close();
+            Metrics.recordDao("findByUserId", start);
+        }
+    }
+
+    // Per l'import massivo: va chiuso, e flush() conferma l'ultimo batch
+    public ArticleBatchWriter batchWriter() throws SQLException {
+        return new ArticleBatchWriter(IMPORT_BATCH_SIZE);
+    }
+
+    // Articoli dell'utente letti a blocchi di STREAM_FETCH_SIZE righe da una StatelessSession,
+    // quindi senza accumularli nel contesto di persistenza. Lo stream va chiuso (try-with-resources).
+    // Su MySQL il driver legge davvero a blocchi solo con useCursorFetch=true nell'URL.
+    public Stream<Article> streamByUserId(String userId) {
+        return openUserStream(userId);
+    }
+
+    private static Stream<Article> openUserStream(String userId) {
+        StatelessSession session = HibernateConfig.openStatelessSession();
+        try {
+            return session.createQuery(
+                    "SELECT a FROM Article a WHERE a.userId = :userId ORDER BY a.dateDownloaded DESC, a.id DESC",
+                    Article.class)
+                .setParameter("userId", userId)
+                .setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, withContent(session))
+                .setFetchSize(STREAM_FETCH_SIZE)
+                .setReadOnly(true)
+                .getResultStream()
+                .onClose(session::close);
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
+        }
+    }
+
+    // Ricerca full-text sull'indice in memoria, senza leggere la colonna content da MySQL
+    public List<SearchHit> search(String userId, String query, int limit) {
+        return SEARCH_INDEX.search(userId, query, limit);
+    }
+
+    public Map<String, Object> searchIndexStats() {
+        return SEARCH_INDEX.stats();
+    }
+
+    // Paginazione keyset su (date_downloaded, id), dal più recente: il costo di una pagina non dipende
+    // da quante ne precedono, a differenza di OFFSET. Le date NULL stanno in fondo, come nell'ORDER BY DESC di MySQL.
+    public ArticlePage findSummariesByUserId(String userId, String cursor, int limit) {
+        long start = System.nanoTime();
+        String[] position = cursor != null && !cursor.isEmpty() ? decodeCursor(cursor) : null;
+        LocalDateTime afterDate = position != null && !position[0].isEmpty() ? LocalDateTime.parse(position[0]) : null;
+
+        StringBuilder jpql = new StringBuilder(
+            "SELECT new com.openwiki.model.ArticleSummary(a.id, a.title, a.imageUrl, a.pageId, a.wikiUrl, a.dateDownloaded)"
+            + " FROM Article a WHERE a.userId = :userId");
+        if (position != null && afterDate != null) {
+            jpql.append(" AND (a.dateDownloaded < :date OR (a.dateDownloaded = :date AND a.id < :id)"
+                + " OR a.dateDownloaded IS NULL)");
+        } else if (position != null) {
+            jpql.append(" AND a.dateDownloaded IS NULL AND a.id < :id");
+        }
+        jpql.append(" ORDER BY a.dateDownloaded DESC, a.id DESC");
+
+        EntityManager em = HibernateConfig.getEntityManager();
+        try {
+            TypedQuery<ArticleSummary> query = em.createQuery(jpql.toString(), ArticleSummary.class)
+                .setParameter("userId", userId)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setHint(HibernateHints.HINT_CACHEABLE, true)
+                .setHint(HibernateHints.HINT_CACHE_REGION, USER_LISTING_REGION)
+                .setMaxResults(limit + 1);
+            if (position != null) {
+                query.setParameter("id", position[1]);
+                if (afterDate != null) {
+                    query.setParameter("date", afterDate);
+                }
+            }
+
+            List<ArticleSummary> rows = query.getResultList();
+            // Una riga in più dice se esiste una pagina successiva senza un COUNT separato
+            if (rows.size() <= limit) {
+                return new ArticlePage(rows, null);
+            }
+            List<ArticleSummary> items = new ArrayList<>(rows.subList(0, limit));
+            return new ArticlePage(items, encodeCursor(items.get(limit - 1)));
+        } finally {
+            em.close();
+            Metrics.recordDao("findSummariesByUserId", start);
+        }
+    }
+
+    // Articolo completo (con content) solo se appartiene all'utente
+    public Optional<Article> findByIdForUser(String id, String userId) {
+        long start = System.nanoTime();
+        EntityManager em = HibernateConfig.getEntityManager();
+        try {
+            // em.find passa dalla cache di secondo livello; la proprietà si verifica dopo
+            Article article = em.find(Article.class, id, Map.of(HibernateHints.HINT_READ_ONLY, true));
+            if (article == null || !article.getUserId().equals(userId)) {
+                return Optional.empty();
+            }
+            // content è lazy: si carica (e si decomprime) solo per il proprietario, prima di chiudere la sessione
+            article.getContent();
+            return Optional.of(article);
+        } finally {
+            em.close();
+            Metrics.recordDao("findByIdForUser", start);
+        }
+    }
+
+    // content è lazy: chi restituisce gli articoli completi lo carica nella stessa SELECT
+    private static EntityGraph<Article> withContent(SharedSessionContract session) {
+        EntityGraph<Article> graph = session.createEntityGraph(Article.class);
+        graph.addAttributeNodes("content");
+        return graph;
+    }
+
+    static String encodeCursor(ArticleSummary last) {
+        String date = last.getDateDownloaded() != null ? last.getDateDownloaded().toString() : "";
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString((date + "|" + last.getId()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String[] decodeCursor(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf('|');
+            if (separator < 0 || separator == decoded.length() - 1) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            String date = decoded.substring(0, separator);
+            if (!date.isEmpty()) {
+                LocalDateTime.parse(date);
+            }
+            return new String[] {date, decoded.substring(separator + 1)};
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
         }
     }
 
     public boolean deleteArticle(String articleId, String userId) {
+        long start = System.nanoTime();
         EntityManager em = HibernateConfig.getEntityManager();
         try {
             em.getTransaction().begin();
@@ -64,6 +243,9 @@ public class ArticleDAO {
                 .setParameter("userId", userId)
                 .executeUpdate();
             em.getTransaction().commit();
+            if (deleted > 0) {
+                SEARCH_INDEX.remove(userId, articleId);
+            }
             return deleted > 0;
         } catch (Exception e) {
             if (em.getTransaction().isActive()) {
@@ -72,27 +254,144 @@ public class ArticleDAO {
             throw e;
         } finally {
             em.close();
+            Metrics.recordDao("deleteArticle", start);
         }
     }
 
-    public boolean updateArticle(Article article) {
-        EntityManager em = HibernateConfig.getEntityManager();
+    public enum UpdateResult { UPDATED, NOT_FOUND, CONFLICT }
+
+    // Un solo UPDATE condizionato: proprietario (e versione, se il client la manda) nel WHERE, nel SET solo
+    // i campi presenti. Passa da JDBC perché un UPDATE HQL svuoterebbe tutta la regione "articles" della
+    // cache di secondo livello; qui si scarta solo l'articolo modificato, dopo il commit.
+    // Con UPDATED, changes contiene l'articolo così come è stato salvato
+    public UpdateResult updateArticle(Article changes) throws SQLException {
+        List<String> columns = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        addChange(columns, values, "title", changes.getTitle());
+        addChange(columns, values, "content_compressed", CompressedTextConverter.compress(changes.getContent()));
+        addChange(columns, values, "image_url", changes.getImageUrl());
+        addChange(columns, values, "page_id", changes.getPageId());
+        addChange(columns, values, "wiki_url", changes.getWikiUrl());
+        addChange(columns, values, "date_downloaded",
+            changes.getDateDownloaded() != null ? Timestamp.valueOf(changes.getDateDownloaded()) : null);
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("No fields to update");
+        }
+        // id e user_id sono INT: legati come numeri, perché un confronto con una stringa può non usare l'indice
+        Long id = parseId(changes.getId());
+        Long userId = parseId(changes.getUserId());
+        if (id == null || userId == null) {
+            return UpdateResult.NOT_FOUND;
+        }
+
+        long start = System.nanoTime();
         try {
-            em.getTransaction().begin();
-            Article existingArticle = em.find(Article.class, article.getId());
-            if (existingArticle != null && existingArticle.getUserId().equals(article.getUserId())) {
-                em.merge(article);
-                em.getTransaction().commit();
-                return true;
-            }
-            return false;
-        } catch (Exception e) {
-            if (em.getTransaction().isActive()) {
-                em.getTransaction().rollback();
+            UpdateResult result = applyUpdate(changes, columns, values, id, userId);
+            if (result == UpdateResult.UPDATED) {
+                HibernateConfig.evictEntity(Article.class, changes.getId());
+                HibernateConfig.evictQueryRegion(USER_LISTING_REGION);
+                SEARCH_INDEX.patch(changes);
             }
-            throw e;
+            return result;
         } finally {
-            em.close();
+            Metrics.recordDao("updateArticle", start);
+        }
+    }
+
+    // La riga aggiornata si rilegge nella stessa transazione, per chiave primaria: l'UPDATE la tiene bloccata,
+    // quindi è esattamente ciò che è stato scritto e una DELETE concorrente non può farla sparire prima del commit
+    private UpdateResult applyUpdate(Article changes, List<String> columns, List<Object> values,
+                                     long id, long userId) throws SQLException {
+        StringBuilder sql = new StringBuilder("UPDATE saved_articles SET ");
+        for (String column : columns) {
+            sql.append(column).append(" = ?, ");
+        }
+        sql.append("version = version + 1, updated_at = ? WHERE id = ? AND user_id = ?");
+        Long expectedVersion = changes.getVersion();
+        if (expectedVersion != null) {
+            sql.append(" AND version = ?");
+        }
+
+        try (Connection connection = DatabaseConfig.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                int updated;
+                try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+                    int index = 1;
+                    for (Object value : values) {
+                        statement.setObject(index++, value);
+                    }
+                    statement.setTimestamp(index++, Timestamp.valueOf(LocalDateTime.now()));
+                    statement.setLong(index++, id);
+                    statement.setLong(index++, userId);
+                    if (expectedVersion != null) {
+                        statement.setLong(index, expectedVersion);
+                    }
+                    updated = statement.executeUpdate();
+                }
+                if (updated == 0) {
+                    connection.rollback();
+                    // Solo sul percorso di errore: distingue un articolo altrui o inesistente da una versione superata
+                    return expectedVersion != null && exists(connection, id, userId)
+                        ? UpdateResult.CONFLICT : UpdateResult.NOT_FOUND;
+                }
+                readStored(connection, id, changes);
+                connection.commit();
+                return UpdateResult.UPDATED;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static void readStored(Connection connection, long id, Article target) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT user_id, title, content_compressed, image_url, page_id, wiki_url, date_downloaded, version,"
+                    + " updated_at FROM saved_articles WHERE id = ?")) {
+            statement.setLong(1, id);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                target.setUserId(rs.getString("user_id"));
+                target.setTitle(rs.getString("title"));
+                target.setContent(CompressedTextConverter.decompress(rs.getBytes("content_compressed")));
+                target.setImageUrl(rs.getString("image_url"));
+                target.setPageId(rs.getString("page_id"));
+                target.setWikiUrl(rs.getString("wiki_url"));
+                Timestamp downloaded = rs.getTimestamp("date_downloaded");
+                target.setDateDownloaded(downloaded != null ? downloaded.toLocalDateTime() : null);
+                target.setVersion(rs.getLong("version"));
+                Timestamp updatedAt = rs.getTimestamp("updated_at");
+                target.setUpdatedAt(updatedAt != null ? updatedAt.toLocalDateTime() : null);
+            }
+        }
+    }
+
+    private static void addChange(List<String> columns, List<Object> values, String column, Object value) {
+        if (value != null) {
+            columns.add(column);
+            values.add(value);
+        }
+    }
+
+    private static boolean exists(Connection connection, long id, long userId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT 1 FROM saved_articles WHERE id = ? AND user_id = ?")) {
+            statement.setLong(1, id);
+            statement.setLong(2, userId);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static Long parseId(String value) {
+        try {
+            return value != null ? Long.parseLong(value.trim()) : null;
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
-} 
\ No newline at end of file
+}
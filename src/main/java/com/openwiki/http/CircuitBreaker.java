@@ -0,0 +1,68 @@
+package com.openwiki.http;
+
+import java.time.Duration;
+
+// Si apre dopo failureThreshold errori consecutivi; trascorso openDuration lascia passare una sola
+// richiesta di prova (half-open) che lo richiude se va a buon fine o lo riapre se fallisce
+class CircuitBreaker {
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+    private long opened;
+
+    CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    synchronized boolean allowRequest() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) {
+                return false;
+            }
+            probeInFlight = true;
+        }
+        return true;
+    }
+
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        state = State.CLOSED;
+    }
+
+    synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            probeInFlight = false;
+            opened++;
+        }
+    }
+
+    // La richiesta autorizzata non è partita (bulkhead pieno): non conta né come successo né come errore
+    synchronized void onRejected() {
+        probeInFlight = false;
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    synchronized long opened() {
+        return opened;
+    }
+}
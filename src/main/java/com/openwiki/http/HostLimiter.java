@@ -0,0 +1,88 @@
+package com.openwiki.http;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+// Limita le richieste contemporanee verso uno stesso host senza bloccare thread:
+// le richieste in eccesso restano in coda e partono quando una si completa
+class HostLimiter {
+    private final int maxInFlight;
+    private final Deque<Runnable> waiting = new ArrayDeque<>();
+    private int inFlight;
+
+    HostLimiter(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            // Annullata mentre era in coda (tentativo di hedging perso, scadenza dell'UpstreamGuard): non parte
+            if (result.isDone()) {
+                release();
+                return;
+            }
+            CompletableFuture<T> call;
+            try {
+                call = task.get();
+            } catch (RuntimeException e) {
+                release();
+                result.completeExceptionally(e);
+                return;
+            }
+            call.whenComplete((value, error) -> {
+                release();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+            // cancel(true) del chiamante arriva fino a HttpClient, che interrompe lo scambio
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    call.cancel(true);
+                }
+            });
+        };
+
+        boolean runNow;
+        synchronized (this) {
+            runNow = inFlight < maxInFlight;
+            if (runNow) {
+                inFlight++;
+            } else {
+                waiting.addLast(start);
+            }
+        }
+        if (runNow) {
+            start.run();
+        }
+        return result;
+    }
+
+    private void release() {
+        Runnable next;
+        synchronized (this) {
+            next = waiting.pollFirst();
+            if (next == null) {
+                inFlight--;
+            }
+        }
+        if (next != null) {
+            next.run();
+        }
+    }
+
+    synchronized Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("inFlight", inFlight);
+        result.put("queued", waiting.size());
+        result.put("maxInFlight", maxInFlight);
+        return result;
+    }
+}
@@ -0,0 +1,187 @@
+package com.openwiki.http;
+
+import com.openwiki.config.AppConfig;
+import com.openwiki.config.ServerConfig;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+// Client HTTP condiviso per tutte le chiamate in uscita (Wikipedia e servizio di autenticazione Flask)
+public class UpstreamClient {
+    private static final String USER_AGENT = "OpenWiki/1.0";
+
+    static {
+        // Letta dal JDK al primo utilizzo di HttpClient: va impostata prima di creare il client
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout",
+                String.valueOf(AppConfig.getLong("http.keepAliveSeconds", 120)));
+        }
+    }
+
+    private static volatile UpstreamClient shared;
+
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final int maxConnectionsPerHost;
+    private final Map<String, HostLimiter> hostLimiters = new ConcurrentHashMap<>();
+
+    public UpstreamClient(Duration connectTimeout, Duration requestTimeout, int maxConnectionsPerHost, int executorThreads) {
+        this.requestTimeout = requestTimeout;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+
+        ExecutorService executor = ServerConfig.upstreamExecutor("upstream-http");
+        if (executor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(executorThreads, runnable -> {
+                Thread thread = new Thread(runnable, "upstream-http-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        // HTTP/2 su TLS (ALPN) con Wikipedia: una sola connessione multiplexata invece di un socket per richiesta
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(connectTimeout)
+            .executor(executor)
+            .build();
+    }
+
+    public static UpstreamClient shared() {
+        if (shared == null) {
+            synchronized (UpstreamClient.class) {
+                if (shared == null) {
+                    shared = new UpstreamClient(
+                        Duration.ofMillis(AppConfig.getLong("http.connectTimeoutMillis", 5000)),
+                        Duration.ofMillis(AppConfig.getLong("http.requestTimeoutMillis", 20000)),
+                        AppConfig.getInt("http.maxConnectionsPerHost", 32),
+                        AppConfig.getInt("http.executorThreads", Math.max(4, Runtime.getRuntime().availableProcessors() * 2)));
+                }
+            }
+        }
+        return shared;
+    }
+
+    public HttpRequest.Builder newRequest(String url) {
+        return newRequest(url, requestTimeout);
+    }
+
+    public HttpRequest.Builder newRequest(String url, Duration timeout) {
+        URI uri = URI.create(url);
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+            .uri(uri)
+            .timeout(timeout)
+            .header("Accept", "application/json")
+            .header("Accept-Encoding", "gzip")
+            .header("User-Agent", USER_AGENT);
+        // Su http in chiaro (Flask in locale) niente tentativo di upgrade h2c
+        if ("http".equalsIgnoreCase(uri.getScheme())) {
+            builder.version(HttpClient.Version.HTTP_1_1);
+        }
+        return builder;
+    }
+
+    @FunctionalInterface
+    public interface BodyParser<T> {
+        T parse(InputStream body) throws IOException;
+    }
+
+    public HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return await(sendAsync(request));
+    }
+
+    public CompletableFuture<HttpResponse<String>> sendAsync(HttpRequest request) {
+        return limiterFor(request.uri())
+            .submit(() -> httpClient.sendAsync(request, UpstreamClient::decodedString));
+    }
+
+    public <T> HttpResponse<T> send(HttpRequest request, BodyParser<T> parser) throws IOException, InterruptedException {
+        return await(sendAsync(request, parser));
+    }
+
+    // Il body arriva come byte[] e viene letto dal parser tramite InputStream (decompresso al volo):
+    // niente String intermedia. Non si usa ofInputStream perché il parsing bloccherebbe
+    // un thread dell'executor in attesa della rete per ogni risposta in volo.
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, BodyParser<T> parser) {
+        return limiterFor(request.uri())
+            .submit(() -> httpClient.sendAsync(request, info -> HttpResponse.BodySubscribers.mapping(
+                HttpResponse.BodySubscribers.ofByteArray(), bytes -> parse(parser, bytes, isGzip(info)))));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        hostLimiters.forEach((host, limiter) -> result.put(host, limiter.stats()));
+        return result;
+    }
+
+    private HostLimiter limiterFor(URI uri) {
+        return hostLimiters.computeIfAbsent(uri.getScheme() + "://" + uri.getAuthority(),
+            host -> new HostLimiter(maxConnectionsPerHost));
+    }
+
+    static <T> HttpResponse<T> await(CompletableFuture<HttpResponse<T>> future)
+            throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static boolean isGzip(HttpResponse.ResponseInfo info) {
+        return info.headers().firstValue("Content-Encoding")
+            .map(encoding -> encoding.equalsIgnoreCase("gzip"))
+            .orElse(false);
+    }
+
+    private static <T> T parse(BodyParser<T> parser, byte[] body, boolean gzip) {
+        try (InputStream in = gzip ? new GZIPInputStream(new ByteArrayInputStream(body)) : new ByteArrayInputStream(body)) {
+            return parser.parse(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // HttpClient non decomprime da solo: gestisce Content-Encoding: gzip
+    private static HttpResponse.BodySubscriber<String> decodedString(HttpResponse.ResponseInfo info) {
+        if (!isGzip(info)) {
+            return HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+        }
+        return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), UpstreamClient::gunzip);
+    }
+
+    private static String gunzip(byte[] compressed) {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
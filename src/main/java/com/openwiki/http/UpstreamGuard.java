@@ -0,0 +1,337 @@
+package com.openwiki.http;
+
+import com.openwiki.config.AppConfig;
+import com.openwiki.metrics.Metrics;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Protezioni di un singolo upstream (Wikipedia, servizio Flask), configurate con upstream.<nome>.*:
+// - bulkhead: al massimo maxConcurrent chiamate in corso e maxQueued in attesa, oltre si risponde subito con errore
+// - timeout per richiesta, più stretto di http.requestTimeoutMillis: conta da sendAsync, attesa nel bulkhead compresa
+// - circuit breaker: dopo troppi errori consecutivi (eccezioni, timeout, 5xx) le chiamate falliscono senza rete
+// - hedging (solo GET, disattivato di default): se la risposta tarda oltre il p95 recente parte un secondo tentativo
+//   e vince il primo che risponde; l'altro viene annullato
+public class UpstreamGuard {
+    // Campioni di latenza per il p95 e minimo di campioni prima di iniziare a duplicare le richieste
+    private static final int LATENCY_WINDOW = 256;
+    private static final int MIN_HEDGE_SAMPLES = 32;
+    // Scadenze e hedging di tutti gli upstream; un timer si cancella (e si toglie dalla coda) appena la richiesta
+    // si completa, così non tiene in vita risposta e body fino alla scadenza
+    private static final ScheduledThreadPoolExecutor TIMERS = newTimers();
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final Duration requestTimeout;
+    private final CircuitBreaker breaker;
+    private final boolean hedging;
+    private final long minHedgeDelayNanos;
+    private final LatencyWindow latencies = new LatencyWindow(LATENCY_WINDOW);
+    private final Deque<Runnable> waiting = new ArrayDeque<>();
+    private int inFlight;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    public UpstreamGuard(String name, int maxConcurrent, int maxQueued, Duration requestTimeout, int failureThreshold,
+                         Duration openDuration, boolean hedging, Duration minHedgeDelay) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.requestTimeout = requestTimeout;
+        this.breaker = new CircuitBreaker(failureThreshold, openDuration);
+        this.hedging = hedging;
+        this.minHedgeDelayNanos = minHedgeDelay.toNanos();
+    }
+
+    public static UpstreamGuard fromConfig(String name) {
+        String prefix = "upstream." + name + ".";
+        UpstreamGuard guard = new UpstreamGuard(name,
+            AppConfig.getInt(prefix + "maxConcurrent", 64),
+            AppConfig.getInt(prefix + "maxQueued", 256),
+            Duration.ofMillis(AppConfig.getLong(prefix + "timeoutMillis", 4000)),
+            AppConfig.getInt(prefix + "breaker.failureThreshold", 5),
+            Duration.ofMillis(AppConfig.getLong(prefix + "breaker.openMillis", 10_000)),
+            AppConfig.getBoolean(prefix + "hedge.enabled", false),
+            Duration.ofMillis(AppConfig.getLong(prefix + "hedge.minDelayMillis", 50)));
+        Metrics.monitor(guard);
+        return guard;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    // Da usare come timeout delle HttpRequest dirette a questo upstream
+    public Duration requestTimeout() {
+        return requestTimeout;
+    }
+
+    public <T> HttpResponse<T> send(boolean idempotent, Supplier<CompletableFuture<HttpResponse<T>>> call)
+            throws IOException, InterruptedException {
+        return UpstreamClient.await(sendAsync(idempotent, call));
+    }
+
+    // call invia un tentativo: viene invocata una volta, o due se parte la richiesta di hedging.
+    // Le risposte 5xx arrivano al chiamante come risposte ma contano come errori per il breaker
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(boolean idempotent,
+                                                            Supplier<CompletableFuture<HttpResponse<T>>> call) {
+        if (!breaker.allowRequest()) {
+            shortCircuited.increment();
+            return CompletableFuture.failedFuture(new UpstreamUnavailableException(name + ": circuit open"));
+        }
+
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        Runnable start = () -> {
+            // Scaduta mentre era in coda: lo slot passa alla richiesta successiva
+            if (result.isDone()) {
+                release();
+                return;
+            }
+            attempt(call, result, pending, false);
+            long delay = hedgeDelayNanos();
+            if (idempotent && delay > 0) {
+                schedule(result, delay, () -> hedge(call, result, pending));
+            }
+        };
+        // La scadenza parte prima del bulkhead: il tempo in coda fa parte del timeout
+        schedule(result, requestTimeout.toNanos(), () -> expire(result, start));
+        if (!acquire(start)) {
+            // Se era la richiesta di prova del breaker half-open, la prova resta disponibile per la successiva
+            breaker.onRejected();
+            rejected.increment();
+            result.completeExceptionally(new UpstreamUnavailableException(name + ": too many concurrent requests"));
+        }
+        return result;
+    }
+
+    // Timeout complessivo: se la richiesta era ancora in coda non è colpa dell'upstream e il breaker non lo conta;
+    // i tentativi in corso vengono annullati e li conta attempt() come timeout, una volta sola
+    private <T> void expire(CompletableFuture<HttpResponse<T>> result, Runnable start) {
+        boolean queued;
+        synchronized (this) {
+            queued = waiting.remove(start);
+        }
+        if (result.completeExceptionally(new HttpTimeoutException(
+                name + ": no response within " + requestTimeout.toMillis() + " ms")) && queued) {
+            timeouts.increment();
+            breaker.onRejected();
+        }
+    }
+
+    private <T> void hedge(Supplier<CompletableFuture<HttpResponse<T>>> call,
+                           CompletableFuture<HttpResponse<T>> result, AtomicInteger pending) {
+        // Niente secondo tentativo se la risposta è già arrivata, se il breaker non è chiuso o se il bulkhead è pieno
+        if (result.isDone() || breaker.state() != CircuitBreaker.State.CLOSED || !tryAcquire()) {
+            return;
+        }
+        if (pending.getAndUpdate(p -> p == 0 ? 0 : p + 1) == 0) {
+            release();
+            return;
+        }
+        hedges.increment();
+        attempt(call, result, pending, true);
+    }
+
+    private <T> void attempt(Supplier<CompletableFuture<HttpResponse<T>>> call,
+                             CompletableFuture<HttpResponse<T>> result, AtomicInteger pending, boolean hedge) {
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<T>> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        // Appena c'è un risultato (risposta dell'altro tentativo o scadenza) questo tentativo non serve più
+        CompletableFuture<HttpResponse<T>> attempt = future;
+        result.whenComplete((response, error) -> attempt.cancel(true));
+        future.whenComplete((response, error) -> {
+            release();
+            boolean cancelled = unwrap(error) instanceof CancellationException;
+            if (cancelled && !(result.isCompletedExceptionally() && !result.isCancelled())) {
+                // Ha perso contro l'altro tentativo: non è un errore dell'upstream
+                return;
+            }
+            if (error == null && response.statusCode() < 500) {
+                breaker.onSuccess();
+                latencies.record(System.nanoTime() - start);
+            } else {
+                failures.increment();
+                // Annullato da expire(): è scaduto il timeout complessivo
+                if (cancelled || unwrap(error) instanceof HttpTimeoutException) {
+                    timeouts.increment();
+                }
+                breaker.onFailure();
+            }
+            // Il risultato è del primo tentativo che risponde; l'errore solo quando sono falliti tutti
+            if (error == null) {
+                if (result.complete(response) && hedge) {
+                    hedgeWins.increment();
+                }
+            } else if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(unwrap(error));
+            }
+        });
+    }
+
+    // Parte subito se c'è uno slot libero, altrimenti attende in coda; false se anche la coda è piena
+    private boolean acquire(Runnable start) {
+        synchronized (this) {
+            if (inFlight >= maxConcurrent) {
+                if (waiting.size() >= maxQueued) {
+                    return false;
+                }
+                waiting.addLast(start);
+                return true;
+            }
+            inFlight++;
+        }
+        start.run();
+        return true;
+    }
+
+    // Per l'hedging: solo uno slot libero, senza scavalcare le richieste in coda
+    private synchronized boolean tryAcquire() {
+        if (inFlight >= maxConcurrent || !waiting.isEmpty()) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    private void release() {
+        Runnable next;
+        synchronized (this) {
+            next = waiting.pollFirst();
+            if (next == null) {
+                inFlight--;
+            }
+        }
+        if (next != null) {
+            next.run();
+        }
+    }
+
+    // Il thread dei timer passa il lavoro al pool comune, come CompletableFuture.delayedExecutor
+    private static void schedule(CompletableFuture<?> result, long delayNanos, Runnable task) {
+        ScheduledFuture<?> timer = TIMERS.schedule(() -> ForkJoinPool.commonPool().execute(task),
+            delayNanos, TimeUnit.NANOSECONDS);
+        result.whenComplete((response, error) -> timer.cancel(false));
+    }
+
+    private static ScheduledThreadPoolExecutor newTimers() {
+        ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "upstream-timers");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timers.setRemoveOnCancelPolicy(true);
+        return timers;
+    }
+
+    // Timer non ancora scaduti né cancellati
+    static int pendingTimers() {
+        return TIMERS.getQueue().size();
+    }
+
+    private long hedgeDelayNanos() {
+        if (!hedging) {
+            return 0;
+        }
+        long p95 = latencies.p95();
+        return p95 > 0 ? Math.max(p95, minHedgeDelayNanos) : 0;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    public boolean isOpen() {
+        return breaker.state() == CircuitBreaker.State.OPEN;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    public long shortCircuited() {
+        return shortCircuited.sum();
+    }
+
+    public long hedges() {
+        return hedges.sum();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", breaker.state().name());
+        stats.put("opened", breaker.opened());
+        synchronized (this) {
+            stats.put("inFlight", inFlight);
+            stats.put("queued", waiting.size());
+        }
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("maxQueued", maxQueued);
+        stats.put("timeoutMillis", requestTimeout.toMillis());
+        stats.put("failures", failures.sum());
+        stats.put("timeouts", timeouts.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("shortCircuited", shortCircuited.sum());
+        stats.put("hedges", hedges.sum());
+        stats.put("hedgeWins", hedgeWins.sum());
+        stats.put("p95Millis", TimeUnit.NANOSECONDS.toMillis(latencies.p95()));
+        return stats;
+    }
+
+    // Ultime latenze delle risposte riuscite; il p95 si ricalcola ogni MIN_HEDGE_SAMPLES campioni, non a ogni lettura
+    private static class LatencyWindow {
+        private final long[] samples;
+        private int next;
+        private long count;
+        private volatile long p95;
+
+        LatencyWindow(int size) {
+            this.samples = new long[size];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count++;
+            if (count >= MIN_HEDGE_SAMPLES && count % MIN_HEDGE_SAMPLES == 0) {
+                long[] sorted = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+                Arrays.sort(sorted);
+                p95 = sorted[(int) Math.ceil(sorted.length * 0.95) - 1];
+            }
+        }
+
+        long p95() {
+            return p95;
+        }
+    }
+}
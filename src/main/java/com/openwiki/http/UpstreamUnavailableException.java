@@ -0,0 +1,12 @@
+package com.openwiki.http;
+
+import java.io.IOException;
+
+// Richiesta rifiutata senza contattare l'upstream: circuito aperto o bulkhead pieno
+public class UpstreamUnavailableException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public UpstreamUnavailableException(String message) {
+        super(message);
+    }
+}
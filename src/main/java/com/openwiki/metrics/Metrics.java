@@ -0,0 +1,173 @@
+package com.openwiki.metrics;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.openwiki.cache.FeaturedArticlePool;
+import com.openwiki.config.AppConfig;
+import com.openwiki.http.UpstreamGuard;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmGcMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmMemoryMetrics;
+import io.micrometer.core.instrument.binder.jvm.JvmThreadMetrics;
+import io.micrometer.core.instrument.binder.system.ProcessorMetrics;
+import io.micrometer.core.instrument.binder.system.UptimeMetrics;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Registro unico delle metriche, esposto su GET /metrics in formato Prometheus. I Timer sono creati una volta
+// e riusati: a regime una misura costa un System.nanoTime() e una registrazione nell'istogramma HdrHistogram
+public final class Metrics {
+    private static final String START_ATTRIBUTE = "metrics.startNanos";
+    private static final boolean HISTOGRAM_BUCKETS = AppConfig.getBoolean("metrics.histogramBuckets", true);
+
+    private static final PrometheusMeterRegistry REGISTRY = createRegistry();
+    private static final ConcurrentMap<String, Timer> TIMERS = new ConcurrentHashMap<>();
+    private static final AtomicInteger IN_FLIGHT = REGISTRY.gauge("http.server.requests.active", new AtomicInteger());
+
+    private Metrics() {
+    }
+
+    private static PrometheusMeterRegistry createRegistry() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        registry.config().commonTags("application", "openwiki-middleware");
+        new JvmMemoryMetrics().bindTo(registry);
+        new JvmGcMetrics().bindTo(registry);
+        new JvmThreadMetrics().bindTo(registry);
+        new ProcessorMetrics().bindTo(registry);
+        new UptimeMetrics().bindTo(registry);
+        return registry;
+    }
+
+    public static MeterRegistry registry() {
+        return REGISTRY;
+    }
+
+    public static String scrape() {
+        return REGISTRY.scrape();
+    }
+
+    public static String contentType() {
+        return TextFormat.CONTENT_TYPE_004;
+    }
+
+    // Tempo di risposta per route (il path dichiarato, es. /api/articles/{id}, non quello richiesto) e richieste in corso
+    public static void instrument(Javalin app) {
+        app.before(ctx -> {
+            ctx.attribute(START_ATTRIBUTE, System.nanoTime());
+            IN_FLIGHT.incrementAndGet();
+        });
+        app.after(Metrics::requestFinished);
+    }
+
+    private static void requestFinished(Context ctx) {
+        Long start = ctx.attribute(START_ATTRIBUTE);
+        if (start == null) {
+            return;
+        }
+        IN_FLIGHT.decrementAndGet();
+        // Senza route Javalin mette qui un messaggio ("No handler matched..."): tutti i 404/405 in una sola serie,
+        // così i path inventati dai client non moltiplicano le serie
+        String route = ctx.endpointHandlerPath();
+        timer("http.server.requests",
+            "method", ctx.method().name(),
+            "route", route.startsWith("/") ? route : "unmatched",
+            "status", String.valueOf(ctx.statusCode()))
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws Exception;
+    }
+
+    // Chiamate a Wikipedia e al servizio Flask, per metodo del service ed esito
+    public static <T> T timeUpstream(String service, String method, Call<T> call) throws Exception {
+        long start = System.nanoTime();
+        try {
+            T result = call.call();
+            upstreamTimer(service, method, "success").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (Exception e) {
+            upstreamTimer(service, method, "error").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    // Il tempo parte prima dell'invio, quindi comprende anche l'attesa di uno slot nel HostLimiter
+    public static <T> CompletableFuture<T> timeUpstreamAsync(String service, String method,
+                                                             Supplier<CompletableFuture<T>> call) {
+        long start = System.nanoTime();
+        return call.get().whenComplete((result, e) -> upstreamTimer(service, method, e == null ? "success" : "error")
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+
+    private static Timer upstreamTimer(String service, String method, String outcome) {
+        return timer("upstream.requests", "service", service, "method", method, "outcome", outcome);
+    }
+
+    // Da chiamare nel finally del metodo DAO, con il System.nanoTime() preso all'ingresso
+    public static void recordDao(String method, long startNanos) {
+        timer("dao.queries", "method", method).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Hit, miss ed evizioni delle cache Caffeine (richiede recordStats() sulla cache)
+    public static void monitor(Cache<?, ?> cache, String name) {
+        CaffeineCacheMetrics.monitor(REGISTRY, cache, name);
+    }
+
+    public static void monitor(AsyncCache<?, ?> cache, String name) {
+        CaffeineCacheMetrics.monitor(REGISTRY, cache, name);
+    }
+
+    // Circuit breaker e bulkhead di un upstream: chiamate in corso, circuito aperto, rifiuti e hedging
+    public static void monitor(UpstreamGuard guard) {
+        Gauge.builder("upstream.inflight", guard, UpstreamGuard::inFlight)
+            .tag("service", guard.name()).register(REGISTRY);
+        Gauge.builder("upstream.circuit.open", guard, g -> g.isOpen() ? 1 : 0)
+            .tag("service", guard.name()).register(REGISTRY);
+        FunctionCounter.builder("upstream.rejected", guard, UpstreamGuard::rejected)
+            .tag("service", guard.name()).tag("reason", "bulkhead").register(REGISTRY);
+        FunctionCounter.builder("upstream.rejected", guard, UpstreamGuard::shortCircuited)
+            .tag("service", guard.name()).tag("reason", "circuit").register(REGISTRY);
+        FunctionCounter.builder("upstream.hedged", guard, UpstreamGuard::hedges)
+            .tag("service", guard.name()).register(REGISTRY);
+    }
+
+    // Coda dell'articolo in evidenza: articoli pronti, durata dell'ultimo riempimento e riempimenti falliti
+    public static void monitor(FeaturedArticlePool pool) {
+        Gauge.builder("featured.pool.depth", pool, FeaturedArticlePool::depth).register(REGISTRY);
+        Gauge.builder("featured.pool.refill.last.millis", pool, FeaturedArticlePool::lastRefillMillis).register(REGISTRY);
+        FunctionCounter.builder("featured.pool.refill.failures", pool, FeaturedArticlePool::refillFailures)
+            .register(REGISTRY);
+    }
+
+    // I Timer si cercano per nome e tag concatenati, evitando il builder di Micrometer a ogni misura
+    static Timer timer(String name, String... tags) {
+        String key = name + '|' + String.join("|", tags);
+        Timer timer = TIMERS.get(key);
+        if (timer != null) {
+            return timer;
+        }
+        return TIMERS.computeIfAbsent(key, k -> Timer.builder(name)
+            .tags(tags)
+            .publishPercentiles(0.5, 0.95, 0.99, 0.999)
+            .publishPercentileHistogram(HISTOGRAM_BUCKETS)
+            .minimumExpectedValue(Duration.ofMillis(1))
+            .maximumExpectedValue(Duration.ofSeconds(30))
+            .register(REGISTRY));
+    }
+}
@@ -1,43 +1,65 @@
 package com.openwiki.middleware;
 
+import com.openwiki.config.AppConfig;
 import io.javalin.http.Context;
 import io.javalin.http.Handler;
+import io.javalin.http.UnauthorizedResponse;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.util.HashMap;
 import java.util.Map;
 
 public class AuthMiddleware implements Handler {
     private static final Logger logger = LoggerFactory.getLogger(AuthMiddleware.class);
 
+    private final SessionDecoder sessionDecoder;
+    // Solo senza segreto di sessione: utente usato quando la richiesta non porta né sessione né X-User-ID; vuoto = 401
+    private final String defaultUserId;
+
+    public AuthMiddleware() {
+        this(SessionDecoder.fromConfig(), AppConfig.get("auth.defaultUserId", "4"));
+    }
+
+    public AuthMiddleware(SessionDecoder sessionDecoder, String defaultUserId) {
+        this.sessionDecoder = sessionDecoder;
+        this.defaultUserId = defaultUserId == null || defaultUserId.isEmpty() ? null : defaultUserId;
+    }
+
     @Override
     public void handle(@NotNull Context ctx) throws Exception {
-        // Log all headers for debugging
-        logger.debug("Request headers: {}", ctx.headerMap());
-        
+        // headerMap() costruisce una mappa nuova: solo se il DEBUG è attivo e la richiesta è nel campione
+        if (logger.isDebugEnabled() && RequestLogging.sampled()) {
+            logger.debug("Request headers: {}", RequestLogging.headers(ctx.headerMap()));
+        }
+
         // Escludi gli endpoint pubblici
-        if (ctx.path().startsWith("/api/test") || 
+        if (ctx.path().startsWith("/api/test") ||
             ctx.path().startsWith("/api/auth") ||
             ctx.path().equals("/api/wikipedia/featured") ||
             ctx.path().startsWith("/api/wikipedia/article/") ||
+            ctx.path().equals("/api/wikipedia/articles") ||
             ctx.path().startsWith("/api/wikipedia/search")) {
             logger.debug("Skipping auth for public endpoint: {}", ctx.path());
             return;
         }
 
-        String userId = ctx.header("X-User-ID");
-        logger.debug("X-User-ID header value: {}", userId);
-        
+        // Il cookie di sessione Flask viene decodificato (e verificato) localmente, senza chiamare Flask
+        String userId = sessionDecoder.userId(ctx.cookie("session"));
+        // Con il segreto configurato conta solo un cookie con firma valida: X-User-ID e l'utente di default
+        // sono ammessi solo in sviluppo, senza segreto
+        if (userId == null && !sessionDecoder.verifiesSignatures()) {
+            userId = ctx.header("X-User-ID");
+            logger.debug("X-User-ID header value: {}", userId);
+            if (userId == null || userId.trim().isEmpty()) {
+                userId = defaultUserId;
+            }
+        }
+
         if (userId == null || userId.trim().isEmpty()) {
-            logger.warn("Unauthorized access attempt to: {} - Missing X-User-ID header", ctx.path());
-            Map<String, String> error = new HashMap<>();
-            error.put("error", "Unauthorized: Missing or invalid user ID");
-            error.put("code", "AUTH_REQUIRED");
-            ctx.status(401).json(error);
-            return;
+            logger.warn("Unauthorized access attempt to: {} - Missing or invalid session", ctx.path());
+            throw new UnauthorizedResponse("Unauthorized: Missing or invalid user ID", Map.of("code", "AUTH_REQUIRED"));
         }
 
-        ctx.attribute("userId", userId);
+        ctx.attribute("userId", userId.trim());
     }
-} 
\ No newline at end of file
+}
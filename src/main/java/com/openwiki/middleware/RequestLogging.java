@@ -0,0 +1,36 @@
+package com.openwiki.middleware;
+
+import com.openwiki.config.AppConfig;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Header e body delle richieste finiscono nel log solo a livello DEBUG, per una richiesta su log.sampleRate
+// e troncati a log.body.maxChars; cookie e token non vengono mai scritti
+public final class RequestLogging {
+    private static final int SAMPLE_RATE = AppConfig.getInt("log.sampleRate", 100);
+    private static final int MAX_BODY_CHARS = AppConfig.getInt("log.body.maxChars", 512);
+    private static final Set<String> REDACTED = Set.of("cookie", "set-cookie", "authorization", "x-user-id");
+
+    private RequestLogging() {
+    }
+
+    // Niente contatore condiviso: l'estrazione per thread non crea contesa tra i worker
+    public static boolean sampled() {
+        return SAMPLE_RATE > 0 && (SAMPLE_RATE == 1 || ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0);
+    }
+
+    public static String truncate(String body) {
+        if (body == null || body.length() <= MAX_BODY_CHARS) {
+            return body;
+        }
+        return body.substring(0, MAX_BODY_CHARS) + "... (" + body.length() + " chars)";
+    }
+
+    public static Map<String, String> headers(Map<String, String> headers) {
+        Map<String, String> result = new LinkedHashMap<>();
+        headers.forEach((name, value) -> result.put(name, REDACTED.contains(name.toLowerCase()) ? "***" : value));
+        return result;
+    }
+}
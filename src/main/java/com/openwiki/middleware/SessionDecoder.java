@@ -0,0 +1,282 @@
+package com.openwiki.middleware;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.openwiki.config.AppConfig;
+import com.openwiki.metrics.Metrics;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Decodifica locale del cookie di sessione Flask (itsdangerous): payload.timestamp.firma,
+// con il payload preceduto da "." quando è compresso con zlib
+public class SessionDecoder {
+    private static final Logger logger = LoggerFactory.getLogger(SessionDecoder.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String FLASK_SALT = "cookie-session";
+    private static final String HMAC_ALGORITHM = "HmacSHA1";
+
+    private final Mac macPrototype;
+    private final long maxAgeSeconds;
+    private final Cache<String, Session> cache;
+
+    public SessionDecoder(String secretKey, Duration maxAge, long maxEntries, Duration cacheTtl) {
+        this.macPrototype = secretKey != null && !secretKey.isEmpty() ? deriveMac(secretKey) : null;
+        this.maxAgeSeconds = maxAge != null ? maxAge.getSeconds() : 0;
+        if (macPrototype == null) {
+            logger.warn("Session secret not configured: session cookies are decoded without signature verification");
+        }
+
+        long ttlNanos = cacheTtl.toNanos();
+        // Una sessione in cache non sopravvive alla propria scadenza (max age di Flask)
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxEntries)
+            .expireAfter(new Expiry<String, Session>() {
+                @Override
+                public long expireAfterCreate(String cookie, Session session, long currentTime) {
+                    if (session.expiresAtMillis == Long.MAX_VALUE) {
+                        return ttlNanos;
+                    }
+                    long remaining = TimeUnit.MILLISECONDS.toNanos(session.expiresAtMillis - System.currentTimeMillis());
+                    return Math.max(0, Math.min(ttlNanos, remaining));
+                }
+
+                @Override
+                public long expireAfterUpdate(String cookie, Session session, long currentTime, long currentDuration) {
+                    return expireAfterCreate(cookie, session, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String cookie, Session session, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+    }
+
+    public static SessionDecoder fromConfig() {
+        long maxAgeSeconds = AppConfig.getLong("auth.session.maxAgeSeconds", 0);
+        SessionDecoder decoder = new SessionDecoder(
+            AppConfig.get("auth.session.secretKey", null),
+            maxAgeSeconds > 0 ? Duration.ofSeconds(maxAgeSeconds) : null,
+            AppConfig.getLong("auth.session.cacheMaxEntries", 10_000),
+            Duration.ofSeconds(AppConfig.getLong("auth.session.cacheTtlSeconds", 300)));
+        Metrics.monitor(decoder.cache, "sessions");
+        return decoder;
+    }
+
+    // userId della sessione, oppure null se il cookie non è valido; il risultato è in cache per cookie
+    // false senza auth.session.secretKey: i cookie vengono decodificati ma non verificati
+    public boolean verifiesSignatures() {
+        return macPrototype != null;
+    }
+
+    public String userId(String cookie) {
+        if (cookie == null || cookie.isEmpty()) {
+            return null;
+        }
+        Session session = cache.getIfPresent(cookie);
+        if (session == null) {
+            session = decode(cookie);
+            if (session == null) {
+                return null;
+            }
+            cache.put(cookie, session);
+        }
+        return session.userId;
+    }
+
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("entries", cache.estimatedSize());
+        return result;
+    }
+
+    // Senza cache: usato anche dal benchmark per misurare il costo della decodifica
+    public String decodeUserId(String cookie) {
+        Session session = decode(cookie);
+        return session != null ? session.userId : null;
+    }
+
+    private Session decode(String cookie) {
+        try {
+            int start = cookie.charAt(0) == '.' ? 1 : 0;
+            int signatureDot = cookie.lastIndexOf('.');
+            int timestampDot = signatureDot > 0 ? cookie.lastIndexOf('.', signatureDot - 1) : -1;
+            long expiresAtMillis = Long.MAX_VALUE;
+
+            if (macPrototype != null) {
+                if (timestampDot <= start) {
+                    return null;
+                }
+                // Il cookie è ASCII (base64url): un'unica copia in byte per HMAC e decodifica
+                byte[] bytes = cookie.getBytes(StandardCharsets.US_ASCII);
+                if (!verifySignature(bytes, signatureDot)) {
+                    logger.warn("Rejected session cookie with invalid signature");
+                    return null;
+                }
+                if (maxAgeSeconds > 0) {
+                    long issuedAt = decodeTimestamp(cookie, timestampDot + 1, signatureDot);
+                    expiresAtMillis = (issuedAt + maxAgeSeconds) * 1000;
+                    if (expiresAtMillis < System.currentTimeMillis()) {
+                        return null;
+                    }
+                }
+                return toSession(decodePayload(bytes, start, timestampDot, start == 1), expiresAtMillis);
+            }
+
+            int payloadEnd = cookie.indexOf('.', start);
+            if (payloadEnd <= start) {
+                return null;
+            }
+            byte[] bytes = cookie.getBytes(StandardCharsets.US_ASCII);
+            return toSession(decodePayload(bytes, start, payloadEnd, start == 1), expiresAtMillis);
+        } catch (Exception e) {
+            logger.warn("Failed to decode session cookie: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean verifySignature(byte[] cookie, int signatureDot) throws CloneNotSupportedException {
+        // Mac non è thread-safe: si clona il prototipo già inizializzato, più economico di getInstance + init
+        Mac mac = (Mac) macPrototype.clone();
+        mac.update(cookie, 0, signatureDot);
+        byte[] expected = mac.doFinal();
+        ByteBuffer actual = Base64.getUrlDecoder()
+            .decode(ByteBuffer.wrap(cookie, signatureDot + 1, cookie.length - signatureDot - 1));
+        if (actual.remaining() != expected.length) {
+            return false;
+        }
+        // Confronto a tempo costante
+        int diff = 0;
+        for (int i = 0; i < expected.length; i++) {
+            diff |= expected[i] ^ actual.get(actual.position() + i);
+        }
+        return diff == 0;
+    }
+
+    private static ByteBuffer decodePayload(byte[] cookie, int from, int to, boolean compressed) throws DataFormatException {
+        ByteBuffer payload = Base64.getUrlDecoder().decode(ByteBuffer.wrap(cookie, from, to - from));
+        if (!compressed) {
+            return payload;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.remaining() * 4);
+            byte[] buffer = new byte[512];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated session payload");
+                }
+                out.write(buffer, 0, count);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Il timestamp di itsdangerous è un intero big-endian in base64url (senza padding)
+    private static long decodeTimestamp(String cookie, int from, int to) {
+        long bits = 0;
+        int bitCount = 0;
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            bits = (bits << 6) | base64UrlValue(cookie.charAt(i));
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                value = (value << 8) | ((bits >> bitCount) & 0xFF);
+            }
+        }
+        return value;
+    }
+
+    private static int base64UrlValue(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 26;
+        }
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 52;
+        }
+        if (c == '-') {
+            return 62;
+        }
+        if (c == '_') {
+            return 63;
+        }
+        throw new IllegalArgumentException("Invalid base64url character: " + c);
+    }
+
+    // Legge solo il campo user_id di primo livello, senza costruire l'albero JSON
+    private static Session toSession(ByteBuffer payload, long expiresAtMillis) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(
+                payload.array(), payload.arrayOffset() + payload.position(), payload.remaining())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("user_id".equals(field) && value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+                    return new Session(parser.getValueAsString(), expiresAtMillis);
+                }
+                parser.skipChildren();
+            }
+        }
+        return null;
+    }
+
+    // Derivazione della chiave di Flask: HMAC-SHA1(secret_key, "cookie-session")
+    private static Mac deriveMac(String secretKey) {
+        try {
+            Mac derivation = Mac.getInstance(HMAC_ALGORITHM);
+            derivation.init(new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            byte[] derivedKey = derivation.doFinal(FLASK_SALT.getBytes(StandardCharsets.UTF_8));
+
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(derivedKey, HMAC_ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA1 not available", e);
+        }
+    }
+
+    private static final class Session {
+        final String userId;
+        final long expiresAtMillis;
+
+        Session(String userId, long expiresAtMillis) {
+            this.userId = userId;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package com.openwiki.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.UpdateTimestamp;
 
 @Entity
 @Table(name = "saved_articles")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "articles")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -22,7 +31,13 @@ public class Article {
     @Column(name = "title")
     private String title;
     
-    @Column(name = "content", columnDefinition = "TEXT")
+    // Compresso su disco e caricato solo quando serve (bytecode enhancement): elenchi e controlli
+    // di proprietà non leggono la colonna
+    @Basic(fetch = FetchType.LAZY)
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(name = "content_compressed", columnDefinition = "MEDIUMBLOB")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private String content;
     
     @Column(name = "image_url")
@@ -36,4 +51,24 @@ public class Article {
     
     @Column(name = "wiki_url")
     private String wikiUrl;
-} 
\ No newline at end of file
+
+    // Controllo ottimistico: un PUT con la versione letta in precedenza fallisce se l'articolo è cambiato nel frattempo
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    // Ultima scrittura (inserimento o PUT): è il Last-Modified degli articoli salvati, non date_downloaded
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    @JsonIgnore
+    private LocalDateTime updatedAt;
+
+    // Solo per gli articoli di Wikipedia (lastrevid e touched di prop=info): servono a ETag e Last-Modified
+    @Transient
+    @JsonIgnore
+    private Long revision;
+
+    @Transient
+    @JsonIgnore
+    private Instant touched;
+}
@@ -0,0 +1,15 @@
+package com.openwiki.model;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArticlePage {
+    private List<ArticleSummary> items;
+    // null sull'ultima pagina
+    private String nextCursor;
+}
@@ -0,0 +1,19 @@
+package com.openwiki.model;
+
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Proiezione per gli elenchi: tutto tranne content, che si legge con GET /api/articles/{id}
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArticleSummary {
+    private String id;
+    private String title;
+    private String imageUrl;
+    private String pageId;
+    private String wikiUrl;
+    private LocalDateTime dateDownloaded;
+}
@@ -0,0 +1,83 @@
+package com.openwiki.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Testo compresso con Deflate nello stesso formato di COMPRESS() di MySQL (lunghezza originale su 4 byte
+// little-endian + stream zlib): la migrazione si fa in SQL e UNCOMPRESS() resta utilizzabile nelle query a mano
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, byte[]> {
+    private static final byte[] EMPTY = new byte[0];
+
+    @Override
+    public byte[] convertToDatabaseColumn(String text) {
+        return compress(text);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] data) {
+        return decompress(data);
+    }
+
+    public static byte[] compress(String text) {
+        if (text == null) {
+            return null;
+        }
+        if (text.isEmpty()) {
+            return EMPTY;
+        }
+        byte[] input = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 16);
+            out.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(input.length).array(), 0, 4);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static String decompress(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (data.length == 0) {
+            return "";
+        }
+        if (data.length < 4) {
+            throw new IllegalArgumentException("Compressed content is truncated");
+        }
+        int length = ByteBuffer.wrap(data, 0, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, 4, data.length - 4);
+            byte[] output = new byte[length];
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int n = inflater.inflate(output, read, length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Compressed content is truncated");
+                }
+                read += n;
+            }
+            return new String(output, 0, read, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Invalid compressed content", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.openwiki.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Risultato di GET /api/articles/search: il punteggio BM25 e un estratto attorno al primo termine trovato
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchHit {
+    private String id;
+    private String title;
+    private String imageUrl;
+    private String wikiUrl;
+    private double score;
+    private String snippet;
+}
@@ -0,0 +1,318 @@
+package com.openwiki.search;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openwiki.config.AppConfig;
+import com.openwiki.metrics.Metrics;
+import com.openwiki.model.Article;
+import com.openwiki.model.SearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+// Indice invertito in memoria, uno per utente. Si costruisce alla prima ricerca leggendo gli articoli
+// dell'utente dal database e poi segue le scritture di ArticleDAO; gli utenti inattivi escono dalla cache
+// e vengono ricostruiti alla ricerca successiva.
+public class ArticleIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ArticleIndex.class);
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // Un termine nel titolo vale quanto tre occorrenze nel testo
+    private static final int TITLE_WEIGHT = 3;
+    private static final int SNIPPET_LENGTH = 200;
+    private static final int SNIPPET_LEAD = 60;
+
+    private final Function<String, Stream<Article>> loader;
+    private final Cache<String, UserIndex> users;
+
+    // loader: gli articoli di un utente, in uno stream che l'indice chiude dopo averlo letto
+    public ArticleIndex(Function<String, Stream<Article>> loader, long maxChars, Duration idleTtl) {
+        this.loader = loader;
+        this.users = Caffeine.newBuilder()
+            .maximumWeight(maxChars)
+            .weigher((String userId, UserIndex index) -> index.weight())
+            .expireAfterAccess(idleTtl)
+            .recordStats()
+            .build();
+    }
+
+    public static ArticleIndex fromConfig(Function<String, Stream<Article>> loader) {
+        ArticleIndex index = new ArticleIndex(loader,
+            AppConfig.getLong("search.index.maxChars", 50_000_000),
+            Duration.ofMinutes(AppConfig.getLong("search.index.idleMinutes", 60)));
+        Metrics.monitor(index.users, "searchIndex");
+        return index;
+    }
+
+    public List<SearchHit> search(String userId, String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>();
+        ItalianAnalyzer.analyze(query, (term, offset) -> terms.add(term));
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        return users.get(userId, this::build).search(terms, limit);
+    }
+
+    // Aggiunge o sostituisce l'articolo, ma solo se l'indice dell'utente è già in memoria
+    public void put(Article article) {
+        UserIndex index = users.getIfPresent(article.getUserId());
+        if (index != null) {
+            index.put(article);
+            reweigh(article.getUserId(), index);
+        } else {
+            // Un indice in costruzione potrebbe non vedere questa scrittura: si scarta e si ricostruisce
+            users.invalidate(article.getUserId());
+        }
+    }
+
+    // Aggiornamento parziale: i campi null di changes restano quelli già indicizzati
+    public void patch(Article changes) {
+        UserIndex index = users.getIfPresent(changes.getUserId());
+        if (index != null) {
+            index.patch(changes);
+            reweigh(changes.getUserId(), index);
+        } else {
+            users.invalidate(changes.getUserId());
+        }
+    }
+
+    public void remove(String userId, String articleId) {
+        UserIndex index = users.getIfPresent(userId);
+        if (index != null) {
+            index.remove(articleId);
+            reweigh(userId, index);
+        } else {
+            users.invalidate(userId);
+        }
+    }
+
+    // Caffeine calcola il peso solo quando la voce viene scritta: dopo ogni modifica l'indice si rimette
+    // in cache (se è ancora lo stesso) perché il limite di maxChars tenga conto della nuova dimensione
+    private void reweigh(String userId, UserIndex index) {
+        users.asMap().replace(userId, index, index);
+    }
+
+    // Per le scritture di cui non si conoscono gli articoli (import JDBC)
+    public void invalidate(String userId) {
+        users.invalidate(userId);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("users", users.estimatedSize());
+        result.put("hits", users.stats().hitCount());
+        result.put("builds", users.stats().loadCount());
+        result.put("evictions", users.stats().evictionCount());
+        return result;
+    }
+
+    private UserIndex build(String userId) {
+        long start = System.nanoTime();
+        UserIndex index = new UserIndex();
+        try (Stream<Article> articles = loader.apply(userId)) {
+            articles.forEach(index::put);
+        }
+        logger.info("Built search index for user {}: {} articles in {} ms",
+            userId, index.size(), (System.nanoTime() - start) / 1_000_000);
+        return index;
+    }
+
+    private static final class Posting {
+        int frequency;
+        // Prima occorrenza nel content, per l'estratto; -1 se il termine compare solo nel titolo
+        int firstOffset = -1;
+    }
+
+    private static final class Document {
+        final Article article;
+        final int length;
+        final Set<String> terms;
+
+        Document(Article article, int length, Set<String> terms) {
+            this.article = article;
+            this.length = length;
+            this.terms = terms;
+        }
+    }
+
+    static final class UserIndex {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, Document> documents = new HashMap<>();
+        private final Map<String, Map<String, Posting>> postings = new HashMap<>();
+        private long totalLength;
+        private long totalChars;
+
+        void put(Article article) {
+            Map<String, Posting> terms = new HashMap<>();
+            int[] length = {0};
+            ItalianAnalyzer.analyze(article.getTitle(), (term, offset) -> {
+                terms.computeIfAbsent(term, t -> new Posting()).frequency += TITLE_WEIGHT;
+                length[0] += TITLE_WEIGHT;
+            });
+            ItalianAnalyzer.analyze(article.getContent(), (term, offset) -> {
+                Posting posting = terms.computeIfAbsent(term, t -> new Posting());
+                posting.frequency++;
+                if (posting.firstOffset < 0) {
+                    posting.firstOffset = offset;
+                }
+                length[0]++;
+            });
+
+            lock.writeLock().lock();
+            try {
+                removeLocked(article.getId());
+                documents.put(article.getId(), new Document(article, length[0], terms.keySet()));
+                for (Map.Entry<String, Posting> entry : terms.entrySet()) {
+                    postings.computeIfAbsent(entry.getKey(), t -> new HashMap<>()).put(article.getId(), entry.getValue());
+                }
+                totalLength += length[0];
+                totalChars += chars(article);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void patch(Article changes) {
+            Article current;
+            lock.readLock().lock();
+            try {
+                Document document = documents.get(changes.getId());
+                if (document == null) {
+                    return;
+                }
+                current = document.article;
+            } finally {
+                lock.readLock().unlock();
+            }
+            Article merged = new Article();
+            merged.setId(current.getId());
+            merged.setUserId(current.getUserId());
+            merged.setTitle(changes.getTitle() != null ? changes.getTitle() : current.getTitle());
+            merged.setContent(changes.getContent() != null ? changes.getContent() : current.getContent());
+            merged.setImageUrl(changes.getImageUrl() != null ? changes.getImageUrl() : current.getImageUrl());
+            merged.setWikiUrl(changes.getWikiUrl() != null ? changes.getWikiUrl() : current.getWikiUrl());
+            put(merged);
+        }
+
+        void remove(String articleId) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(articleId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void removeLocked(String articleId) {
+            Document document = documents.remove(articleId);
+            if (document == null) {
+                return;
+            }
+            for (String term : document.terms) {
+                Map<String, Posting> termPostings = postings.get(term);
+                termPostings.remove(articleId);
+                if (termPostings.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+            totalLength -= document.length;
+            totalChars -= chars(document.article);
+        }
+
+        List<SearchHit> search(Set<String> terms, int limit) {
+            lock.readLock().lock();
+            try {
+                if (documents.isEmpty()) {
+                    return List.of();
+                }
+                double averageLength = (double) totalLength / documents.size();
+                Map<String, double[]> scores = new HashMap<>();
+                for (String term : terms) {
+                    Map<String, Posting> termPostings = postings.get(term);
+                    if (termPostings == null) {
+                        continue;
+                    }
+                    double idf = Math.log(1 + (documents.size() - termPostings.size() + 0.5) / (termPostings.size() + 0.5));
+                    for (Map.Entry<String, Posting> entry : termPostings.entrySet()) {
+                        double frequency = entry.getValue().frequency;
+                        double norm = K1 * (1 - B + B * documents.get(entry.getKey()).length / averageLength);
+                        scores.computeIfAbsent(entry.getKey(), id -> new double[1])[0]
+                            += idf * frequency * (K1 + 1) / (frequency + norm);
+                    }
+                }
+
+                List<Map.Entry<String, double[]>> ranked = new ArrayList<>(scores.entrySet());
+                ranked.sort((a, b) -> Double.compare(b.getValue()[0], a.getValue()[0]));
+                List<SearchHit> hits = new ArrayList<>(Math.min(limit, ranked.size()));
+                for (Map.Entry<String, double[]> entry : ranked.subList(0, Math.min(limit, ranked.size()))) {
+                    Article article = documents.get(entry.getKey()).article;
+                    hits.add(new SearchHit(article.getId(), article.getTitle(), article.getImageUrl(),
+                        article.getWikiUrl(), entry.getValue()[0], snippet(article, terms)));
+                }
+                return hits;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private String snippet(Article article, Set<String> terms) {
+            String content = article.getContent();
+            if (content == null || content.isEmpty()) {
+                return "";
+            }
+            int offset = -1;
+            for (String term : terms) {
+                Posting posting = postings.getOrDefault(term, Map.of()).get(article.getId());
+                if (posting != null && posting.firstOffset >= 0 && (offset < 0 || posting.firstOffset < offset)) {
+                    offset = posting.firstOffset;
+                }
+            }
+            int start = Math.max(0, offset - SNIPPET_LEAD);
+            if (start > 0) {
+                // Si parte da un inizio di parola
+                int space = content.indexOf(' ', start);
+                start = space >= 0 && space < offset ? space + 1 : start;
+            }
+            int end = Math.min(content.length(), start + SNIPPET_LENGTH);
+            if (end < content.length()) {
+                int space = content.lastIndexOf(' ', end);
+                end = space > Math.max(start, offset) ? space : end;
+            }
+            return (start > 0 ? "…" : "") + content.substring(start, end).strip() + (end < content.length() ? "…" : "");
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return documents.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int weight() {
+            lock.readLock().lock();
+            try {
+                return (int) Math.min(Integer.MAX_VALUE, Math.max(1, totalChars));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private static long chars(Article article) {
+            return (article.getTitle() != null ? article.getTitle().length() : 0)
+                + (article.getContent() != null ? article.getContent().length() : 0);
+        }
+    }
+}
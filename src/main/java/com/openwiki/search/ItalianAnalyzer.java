@@ -0,0 +1,88 @@
+package com.openwiki.search;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Set;
+
+// Tokenizzazione per i testi di it.wikipedia.org: minuscole senza accenti ("città" = "citta"),
+// elisioni spezzate sull'apostrofo ("dell'impero" -> "impero"), stopword e uno stemmer leggero
+// che unifica singolare/plurale e maschile/femminile ("romani", "romano", "romana" -> "roman").
+public final class ItalianAnalyzer {
+    private static final Set<String> STOPWORDS = Set.of(
+        // Forme elise: "dell'impero" produce "dell" e "impero"
+        "all", "dall", "dell", "nell", "sull", "quell", "quest",
+        "a", "ad", "al", "alla", "alle", "allo", "agli", "ai", "anche", "che", "chi", "ci", "coi", "col", "come",
+        "con", "cui", "da", "dal", "dalla", "dalle", "dallo", "dagli", "dai", "degli", "dei", "del", "della",
+        "delle", "dello", "di", "e", "ed", "era", "erano", "essere", "fra", "gli", "ha", "hanno", "i", "il", "in",
+        "io", "la", "le", "lo", "loro", "ma", "ne", "negli", "nei", "nel", "nella", "nelle", "nello", "non", "o",
+        "per", "piu", "quale", "quali", "quella", "quelle", "quelli", "quello", "questa", "queste", "questi",
+        "questo", "se", "si", "sono", "sua", "sue", "sui", "sul", "sulla", "sulle", "sullo", "suo", "suoi",
+        "su", "tra", "un", "una", "uno");
+
+    public interface TokenConsumer {
+        void accept(String term, int offset);
+    }
+
+    private ItalianAnalyzer() {
+    }
+
+    // Chiama consumer per ogni termine indicizzabile, con l'offset del token nel testo originale
+    public static void analyze(String text, TokenConsumer consumer) {
+        if (text == null) {
+            return;
+        }
+        StringBuilder token = new StringBuilder();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (start < 0) {
+                    start = i;
+                }
+                token.append(c);
+            } else if (start >= 0) {
+                emit(token, start, consumer);
+                token.setLength(0);
+                start = -1;
+            }
+        }
+    }
+
+    private static void emit(StringBuilder token, int offset, TokenConsumer consumer) {
+        String term = fold(token);
+        if (term.length() < 2 || STOPWORDS.contains(term)) {
+            return;
+        }
+        consumer.accept(stem(term), offset);
+    }
+
+    private static String fold(StringBuilder token) {
+        String lower = token.toString().toLowerCase(Locale.ITALIAN);
+        for (int i = 0; i < lower.length(); i++) {
+            if (lower.charAt(i) >= 0x80) {
+                return Normalizer.normalize(lower, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+            }
+        }
+        return lower;
+    }
+
+    // Stemmer leggero (Savoy): solo le desinenze di genere e numero, sulle parole di almeno 6 lettere
+    static String stem(String term) {
+        int length = term.length();
+        if (length < 6 || !Character.isLetter(term.charAt(length - 1))) {
+            return term;
+        }
+        char last = term.charAt(length - 1);
+        char previous = term.charAt(length - 2);
+        switch (last) {
+            case 'e':
+            case 'i':
+                return previous == 'i' || previous == 'h' ? term.substring(0, length - 2) : term.substring(0, length - 1);
+            case 'a':
+            case 'o':
+                return previous == 'i' ? term.substring(0, length - 2) : term.substring(0, length - 1);
+            default:
+                return term;
+        }
+    }
+}
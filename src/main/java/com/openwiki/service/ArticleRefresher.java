@@ -0,0 +1,63 @@
+package com.openwiki.service;
+
+import com.openwiki.config.AppConfig;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Rivalida periodicamente gli articoli più letti, così restano in cache e aggiornati senza che sia
+// una richiesta utente a pagare il ricaricamento alla scadenza del TTL
+public class ArticleRefresher implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ArticleRefresher.class);
+
+    private final WikiService wikiService;
+    private final int hotSetSize;
+    private final long intervalSeconds;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "article-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ArticleRefresher(WikiService wikiService, int hotSetSize, long intervalSeconds) {
+        this.wikiService = wikiService;
+        this.hotSetSize = hotSetSize;
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    // L'intervallo deve restare sotto wiki.cache.article.ttlSeconds, altrimenti gli articoli scadono prima del giro
+    public static ArticleRefresher fromConfig(WikiService wikiService) {
+        return new ArticleRefresher(wikiService,
+            AppConfig.getInt("wiki.refresh.hotSetSize", 200),
+            AppConfig.getLong("wiki.refresh.intervalSeconds", 600));
+    }
+
+    public void start() {
+        if (intervalSeconds <= 0 || hotSetSize <= 0) {
+            logger.info("Background article refresh disabled");
+            return;
+        }
+        // Con fixed delay un giro lento non si sovrappone al successivo
+        scheduler.scheduleWithFixedDelay(this::refresh, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    void refresh() {
+        long start = System.nanoTime();
+        try {
+            List<String> refreshed = wikiService.revalidateHotArticles(hotSetSize).join();
+            logger.info("Revalidated hot articles in {} ms, {} refreshed",
+                (System.nanoTime() - start) / 1_000_000, refreshed.size());
+        } catch (Exception e) {
+            // Un errore non deve fermare lo scheduler: si riprova al giro successivo
+            logger.warn("Article revalidation failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
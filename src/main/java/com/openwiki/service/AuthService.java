@@ -1,30 +1,50 @@
 package com.openwiki.service;
 
+import com.openwiki.cache.TokenValidationCache;
+import com.openwiki.config.AppConfig;
+import com.openwiki.http.UpstreamClient;
+import com.openwiki.http.UpstreamGuard;
+import com.openwiki.metrics.Metrics;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.http.HttpResponse;
-import java.util.concurrent.TimeUnit;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.Response;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class AuthService {
+    private static final Logger logger = LoggerFactory.getLogger(AuthService.class);
+    // Sovrascrivibile con auth.api.url
     private static final String AUTH_API_URL = "http://127.0.0.1:5001";
-    private static final String FLASK_AUTH_URL = "http://localhost:5001/auth/validate";
-    private final HttpClient httpClient;
+    private static final String BEARER = "bearer";
+    private static final String SESSION = "session";
+    // Tag "service" delle metriche upstream
+    private static final String UPSTREAM_NAME = "auth";
+    private final String authApiUrl;
+    private final UpstreamClient upstream;
+    private final UpstreamGuard guard;
+    private final TokenValidationCache validationCache;
     private final ObjectMapper objectMapper;
-    private final OkHttpClient client;
 
     public AuthService() {
-        this.httpClient = HttpClient.newHttpClient();
+        this(AppConfig.get("auth.api.url", AUTH_API_URL), UpstreamClient.shared(), TokenValidationCache.fromConfig());
+    }
+
+    public AuthService(String authApiUrl, UpstreamClient upstream, TokenValidationCache validationCache) {
+        this(authApiUrl, upstream, validationCache, UpstreamGuard.fromConfig(UPSTREAM_NAME));
+    }
+
+    public AuthService(String authApiUrl, UpstreamClient upstream, TokenValidationCache validationCache,
+                       UpstreamGuard guard) {
+        this.authApiUrl = authApiUrl;
+        this.upstream = upstream;
+        this.guard = guard;
+        this.validationCache = validationCache;
         this.objectMapper = new ObjectMapper();
-        this.client = new OkHttpClient.Builder()
-            .connectTimeout(10, TimeUnit.SECONDS)
-            .readTimeout(30, TimeUnit.SECONDS)
-            .build();
     }
 
     public String login(String username, String password) throws Exception {
@@ -34,56 +54,58 @@ public class AuthService {
             jsonNode.put("password", password);
 
             String requestBody = jsonNode.toString();
-            String loginUrl = AUTH_API_URL + "/auth/login";
-            System.out.println("Login Request URL: " + loginUrl);
-            System.out.println("Login Request Body: " + requestBody);
+            String loginUrl = authApiUrl + "/auth/login";
 
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(loginUrl))
+            HttpRequest request = upstream.newRequest(loginUrl, guard.requestTimeout())
                     .header("Content-Type", "application/json")
                     .POST(HttpRequest.BodyPublishers.ofString(requestBody))
                     .build();
 
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            
-            System.out.println("Login Response Status: " + response.statusCode());
-            System.out.println("Login Response Body: " + response.body());
-            
+            HttpResponse<String> response = Metrics.timeUpstream(UPSTREAM_NAME, "login",
+                () -> guard.send(false, () -> upstream.sendAsync(request)));
+
+            // Il body contiene il token: si registra solo lo stato
+            logger.debug("Login response status: {}", response.statusCode());
+
             if (response.statusCode() == 200) {
                 return objectMapper.readTree(response.body()).get("token").asText();
             }
             throw new RuntimeException("Login failed with status " + response.statusCode());
         } catch (Exception e) {
-            System.err.println("Login Error: " + e.getMessage());
+            logger.warn("Login failed: {}", e.getMessage());
             throw new RuntimeException("Login failed: " + e.getMessage());
         }
     }
 
     public boolean validateToken(String token) throws Exception {
         try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(AUTH_API_URL + "/auth/validate"))
-                    .header("Authorization", "Bearer " + token)
-                    .GET()
-                    .build();
-
-            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            return response.statusCode() == 200;
+            return validateTokenAsync(token).get();
         } catch (Exception e) {
-            System.err.println("Auth Error: " + e.getMessage());
+            logger.warn("Token validation failed: {}", e.getMessage());
             return false;
         }
     }
 
+    public CompletableFuture<Boolean> validateTokenAsync(String token) {
+        return validationCache.validate(BEARER, token, t -> validate(newValidateRequest()
+            .header("Authorization", "Bearer " + t)
+            .GET()
+            .build()));
+    }
+
+    public void invalidateToken(String token) {
+        validationCache.invalidate(BEARER, token);
+    }
+
     public ObjectNode getUserInfo(String token) throws Exception {
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(AUTH_API_URL + "/auth/user"))
+        HttpRequest request = upstream.newRequest(authApiUrl + "/auth/user", guard.requestTimeout())
                 .header("Authorization", "Bearer " + token)
                 .GET()
                 .build();
 
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-        
+        HttpResponse<String> response = Metrics.timeUpstream(UPSTREAM_NAME, "user",
+            () -> guard.send(true, () -> upstream.sendAsync(request)));
+
         if (response.statusCode() == 200) {
             return (ObjectNode) objectMapper.readTree(response.body());
         }
@@ -91,15 +113,40 @@ public class AuthService {
     }
 
     public boolean validateFlaskSession(String sessionToken) {
-        Request request = new Request.Builder()
-            .url(FLASK_AUTH_URL)
-            .header("Cookie", "session=" + sessionToken)
-            .build();
-
-        try (Response response = client.newCall(request).execute()) {
-            return response.isSuccessful();
+        try {
+            return validateFlaskSessionAsync(sessionToken).get();
         } catch (Exception e) {
             return false;
         }
     }
-} 
\ No newline at end of file
+
+    public CompletableFuture<Boolean> validateFlaskSessionAsync(String sessionToken) {
+        return validationCache.validate(SESSION, sessionToken, t -> validate(newValidateRequest()
+            .header("Cookie", "session=" + t)
+            .GET()
+            .build()));
+    }
+
+    public void invalidateFlaskSession(String sessionToken) {
+        validationCache.invalidate(SESSION, sessionToken);
+    }
+
+    private HttpRequest.Builder newValidateRequest() {
+        return upstream.newRequest(authApiUrl + "/auth/validate", guard.requestTimeout());
+    }
+
+    public Map<String, Object> getValidationCacheStats() {
+        return validationCache.stats();
+    }
+
+    // Solo le risposte 2xx/4xx sono definitive; un 5xx di Flask non va in cache come token non valido
+    private CompletableFuture<Boolean> validate(HttpRequest request) {
+        return Metrics.timeUpstreamAsync(UPSTREAM_NAME, "validate",
+            () -> guard.sendAsync(true, () -> upstream.sendAsync(request))).thenApply(response -> {
+            if (response.statusCode() >= 500) {
+                throw new UncheckedIOException(new IOException("Auth service returned " + response.statusCode()));
+            }
+            return response.statusCode() >= 200 && response.statusCode() < 300;
+        });
+    }
+}
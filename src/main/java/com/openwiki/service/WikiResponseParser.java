@@ -0,0 +1,319 @@
+package com.openwiki.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.openwiki.model.Article;
+import com.openwiki.model.WikiSearchResult;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Parsing in streaming delle risposte di MediaWiki: legge solo i campi usati,
+// senza copiare il body in una String e senza costruire l'albero JsonNode
+public class WikiResponseParser {
+    private static final Logger logger = LoggerFactory.getLogger(WikiResponseParser.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String PLACEHOLDER_CONTENT = "Contenuto non disponibile";
+
+    public List<WikiSearchResult> parseSearchResults(InputStream body) throws IOException {
+        List<WikiSearchResult> results = new ArrayList<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (enterQuery(parser) && enterField(parser, "search", JsonToken.START_ARRAY)) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    results.add(readSearchResult(parser));
+                }
+            }
+        }
+        return results;
+    }
+
+    public String parseRandomTitle(InputStream body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (enterQuery(parser) && enterField(parser, "random", JsonToken.START_ARRAY)
+                    && parser.nextToken() == JsonToken.START_OBJECT
+                    && enterField(parser, "title", JsonToken.VALUE_STRING)) {
+                return parser.getText();
+            }
+        }
+        throw new IOException("Random article title missing from response");
+    }
+
+    // Tutti i titoli di list=random con rnlimit > 1
+    public List<String> parseRandomTitles(InputStream body) throws IOException {
+        List<String> titles = new ArrayList<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (enterQuery(parser) && enterField(parser, "random", JsonToken.START_ARRAY)) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    if (enterField(parser, "title", JsonToken.VALUE_STRING)) {
+                        titles.add(parser.getText());
+                        // Salta i campi dopo il titolo fino alla fine dell'oggetto
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            parser.nextToken();
+                            parser.skipChildren();
+                        }
+                    }
+                }
+            }
+        }
+        return titles;
+    }
+
+    // Prima pagina della risposta, come per la richiesta di un singolo titolo
+    public Article parseArticle(InputStream body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (enterQuery(parser) && enterField(parser, "pages", JsonToken.START_OBJECT)
+                    && parser.nextToken() == JsonToken.FIELD_NAME
+                    && parser.nextToken() == JsonToken.START_OBJECT) {
+                return readPage(parser).article;
+            }
+        }
+        throw new IOException("Article page missing from response");
+    }
+
+    public ArticlePages parseArticlePages(InputStream body) throws IOException {
+        ArticlePages result = new ArticlePages();
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (!enterQuery(parser)) {
+                return result;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("normalized".equals(field) && value == JsonToken.START_ARRAY) {
+                    readNormalized(parser, result.normalized);
+                } else if ("pages".equals(field) && value == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        parser.nextToken();
+                        Page page = readPage(parser);
+                        result.pages.put(page.article.getTitle(), page.article);
+                        if (!page.complete) {
+                            result.withoutExtract.add(page.article.getTitle());
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return result;
+    }
+
+    // Risposta di prop=info: lastrevid per titolo, null per le pagine inesistenti
+    public PageRevisions parsePageRevisions(InputStream body) throws IOException {
+        PageRevisions result = new PageRevisions();
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (!enterQuery(parser)) {
+                return result;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("normalized".equals(field) && value == JsonToken.START_ARRAY) {
+                    readNormalized(parser, result.normalized);
+                } else if ("pages".equals(field) && value == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        parser.nextToken();
+                        readRevision(parser, result.revisions);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return result;
+    }
+
+    public static class PageRevisions {
+        public final Map<String, String> normalized = new HashMap<>();
+        public final Map<String, Long> revisions = new HashMap<>();
+    }
+
+    // Pagine di una risposta multi-titolo; withoutExtract elenca le pagine esistenti rimaste senza estratto
+    public static class ArticlePages {
+        public final Map<String, String> normalized = new HashMap<>();
+        public final Map<String, Article> pages = new HashMap<>();
+        public final Set<String> withoutExtract = new HashSet<>();
+    }
+
+    private static boolean enterQuery(JsonParser parser) throws IOException {
+        return parser.nextToken() == JsonToken.START_OBJECT
+            && enterField(parser, "query", JsonToken.START_OBJECT);
+    }
+
+    // Avanza nell'oggetto corrente fino al campo richiesto, saltando gli altri sotto-alberi
+    private static boolean enterField(JsonParser parser, String name, JsonToken expected) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (name.equals(field) && value == expected) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    private static WikiSearchResult readSearchResult(JsonParser parser) throws IOException {
+        String title = "";
+        String snippet = "";
+        String pageId = "";
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "title":
+                    title = parser.getValueAsString("");
+                    break;
+                case "snippet":
+                    snippet = parser.getValueAsString("");
+                    break;
+                case "pageid":
+                    pageId = parser.getValueAsString("");
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return new WikiSearchResult(title, snippet, pageId,
+            "https://it.wikipedia.org/wiki/" + URLEncoder.encode(title, StandardCharsets.UTF_8));
+    }
+
+    private static void readNormalized(JsonParser parser, Map<String, String> normalized) throws IOException {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String from = null;
+            String to = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("from".equals(field)) {
+                    from = parser.getValueAsString();
+                } else if ("to".equals(field)) {
+                    to = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (from != null && to != null) {
+                normalized.put(from, to);
+            }
+        }
+    }
+
+    private static void readRevision(JsonParser parser, Map<String, Long> revisions) throws IOException {
+        String title = null;
+        Long revision = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("title".equals(field)) {
+                title = parser.getValueAsString();
+            } else if ("lastrevid".equals(field)) {
+                revision = parser.getValueAsLong();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (title != null) {
+            revisions.put(title, revision);
+        }
+    }
+
+    private static Page readPage(JsonParser parser) throws IOException {
+        Article article = new Article();
+        String title = "";
+        String pageId = "";
+        String wikiUrl = "";
+        String content = null;
+        boolean missing = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "title":
+                    title = parser.getValueAsString("");
+                    break;
+                case "pageid":
+                    pageId = parser.getValueAsString("");
+                    break;
+                case "fullurl":
+                    wikiUrl = parser.getValueAsString("");
+                    break;
+                case "lastrevid":
+                    article.setRevision(parser.getValueAsLong());
+                    break;
+                case "touched":
+                    article.setTouched(parseTimestamp(parser.getValueAsString()));
+                    break;
+                case "extract":
+                    content = parser.getValueAsString();
+                    break;
+                case "missing":
+                case "invalid":
+                    missing = true;
+                    parser.skipChildren();
+                    break;
+                case "thumbnail":
+                    if (parser.currentToken() == JsonToken.START_OBJECT) {
+                        article.setImageUrl(readThumbnailSource(parser));
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        boolean complete = content != null || missing;
+        article.setTitle(title);
+        article.setContent(content == null || content.isEmpty() ? PLACEHOLDER_CONTENT : content);
+        article.setPageId(pageId);
+        article.setWikiUrl(wikiUrl);
+
+        logger.debug("Created article with fields - imageUrl: {}, pageId: {}, wikiUrl: {}",
+                    article.getImageUrl(), article.getPageId(), article.getWikiUrl());
+        return new Page(article, complete);
+    }
+
+    private static Instant parseTimestamp(String value) {
+        try {
+            return value != null ? Instant.parse(value) : null;
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String readThumbnailSource(JsonParser parser) throws IOException {
+        String source = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("source".equals(field)) {
+                source = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return source;
+    }
+
+    private static final class Page {
+        final Article article;
+        final boolean complete;
+
+        Page(Article article, boolean complete) {
+            this.article = article;
+            this.complete = complete;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.openwiki.benchmark;
+
+import com.openwiki.dao.ArticleDAO;
+import com.openwiki.model.Article;
+import com.openwiki.model.ArticlePage;
+import com.openwiki.support.EmbeddedDatabase;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * CRUD di ArticleDAO su H2 in modalità MySQL (schema di sql/02_create_tables.sql), con la cache di secondo
+ * livello e il pool HikariCP configurati come in produzione: inserimento e cancellazione, lettura per id e
+ * prima pagina dei riassunti. L'aggiornamento è in ArticleUpdateBenchmark, l'import massivo in ArticleImportBenchmark.
+ *
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *     com.openwiki.benchmark.ArticleDAOBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog.level=WARN")
+public class ArticleDAOBenchmark {
+    private static final String USER_ID = "9698";
+    private static final String CONTENT = "Roma è la capitale d'Italia. ".repeat(600);
+
+    private final List<Article> saved = new ArrayList<>();
+    private ArticleDAO articleDAO;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        EmbeddedDatabase.configure();
+        articleDAO = new ArticleDAO();
+        for (int i = 0; i < 200; i++) {
+            saved.add(articleDAO.save(newArticle("Articolo " + i)));
+        }
+    }
+
+    private static Article newArticle(String title) {
+        Article article = new Article();
+        article.setUserId(USER_ID);
+        article.setTitle(title);
+        article.setContent(CONTENT);
+        article.setWikiUrl("https://it.wikipedia.org/wiki/" + title.replace(' ', '_'));
+        article.setDateDownloaded(LocalDateTime.now());
+        return article;
+    }
+
+    private Article nextArticle() {
+        next = (next + 1) % saved.size();
+        return saved.get(next);
+    }
+
+    // POST e DELETE insieme, così la tabella resta della stessa dimensione tra un'iterazione e l'altra
+    @Benchmark
+    public boolean saveAndDelete() throws Exception {
+        Article article = articleDAO.save(newArticle("Temporaneo"));
+        return articleDAO.deleteArticle(article.getId(), USER_ID);
+    }
+
+    @Benchmark
+    public Optional<Article> findByIdForUser() {
+        return articleDAO.findByIdForUser(nextArticle().getId(), USER_ID);
+    }
+
+    @Benchmark
+    public ArticlePage findSummaries() {
+        return articleDAO.findSummariesByUserId(USER_ID, null, 20);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(ArticleDAOBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
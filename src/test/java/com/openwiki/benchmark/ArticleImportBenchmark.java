@@ -0,0 +1,87 @@
+package com.openwiki.benchmark;
+
+import com.openwiki.dao.ArticleBatchWriter;
+import com.openwiki.dao.ArticleDAO;
+import com.openwiki.model.Article;
+import com.openwiki.support.EmbeddedDatabase;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Articoli inseriti al secondo su H2 in memoria: ArticleDAO.save (una transazione e una INSERT
+ * IDENTITY per articolo) contro ArticleBatchWriter (batch JDBC da articles.import.batchSize righe).
+ *
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *     com.openwiki.benchmark.ArticleImportBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog.level=WARN")
+public class ArticleImportBenchmark {
+    private static final int ARTICLES = 1000;
+    private static final String CONTENT = "Roma è la capitale d'Italia. ".repeat(200);
+
+    private ArticleDAO articleDAO;
+
+    @Setup
+    public void setUp() {
+        EmbeddedDatabase.configure();
+        System.setProperty("db.showSql", "false");
+        articleDAO = new ArticleDAO();
+    }
+
+    private static Article article(int n) {
+        Article article = new Article();
+        article.setUserId("9399");
+        article.setTitle("Articolo " + n);
+        article.setContent(CONTENT);
+        article.setWikiUrl("https://it.wikipedia.org/wiki/Articolo_" + n);
+        article.setDateDownloaded(LocalDateTime.now());
+        return article;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ARTICLES)
+    public void saveOneByOne() throws Exception {
+        for (int i = 0; i < ARTICLES; i++) {
+            articleDAO.save(article(i));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ARTICLES)
+    public int batchWriter() throws Exception {
+        try (ArticleBatchWriter writer = articleDAO.batchWriter()) {
+            for (int i = 0; i < ARTICLES; i++) {
+                writer.add(article(i));
+            }
+            writer.flush();
+            return writer.getCommitted();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(ArticleImportBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,91 @@
+package com.openwiki.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openwiki.model.Article;
+import com.openwiki.model.SearchHit;
+import com.openwiki.search.ArticleIndex;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Latenza di una ricerca sull'indice di un utente con N articoli da ~20.000 caratteri,
+ * generati mescolando le parole dell'estratto di fixtures/article-roma.json.
+ *
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *     com.openwiki.benchmark.ArticleIndexBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dlog.level=WARN"})
+public class ArticleIndexBenchmark {
+    @Param({"100", "1000"})
+    public int articles;
+
+    private ArticleIndex index;
+
+    @Setup
+    public void setUp() throws Exception {
+        String extract;
+        try (InputStream in = ArticleIndexBenchmark.class.getResourceAsStream("/fixtures/article-roma.json")) {
+            JsonNode pages = new ObjectMapper().readTree(in).path("query").path("pages");
+            extract = pages.elements().next().path("extract").asText();
+        }
+        String[] words = extract.split("\\s+");
+        Random random = new Random(42);
+        List<Article> library = new ArrayList<>();
+        for (int i = 0; i < articles; i++) {
+            StringBuilder content = new StringBuilder();
+            while (content.length() < 20_000) {
+                content.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            Article article = new Article();
+            article.setId(String.valueOf(i));
+            article.setUserId("4");
+            article.setTitle(words[random.nextInt(words.length)] + " " + i);
+            article.setContent(content.toString());
+            library.add(article);
+        }
+        index = new ArticleIndex(userId -> library.stream(), Long.MAX_VALUE, Duration.ofHours(1));
+        index.search("4", "roma", 1);
+    }
+
+    @Benchmark
+    public List<SearchHit> singleTerm() {
+        return index.search("4", "papa", 10);
+    }
+
+    @Benchmark
+    public List<SearchHit> threeTerms() {
+        return index.search("4", "fontane barocche capitale", 10);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(ArticleIndexBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
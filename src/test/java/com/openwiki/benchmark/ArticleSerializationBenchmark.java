@@ -0,0 +1,98 @@
+package com.openwiki.benchmark;
+
+import com.openwiki.config.ServerConfig;
+import com.openwiki.model.Article;
+import com.openwiki.service.WikiResponseParser;
+import io.javalin.json.JavalinJackson;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Serializzazione degli articoli con il mapper JSON configurato in ServerConfig.jsonMapper(), lo stesso di
+ * ctx.json(): un articolo (GET /api/wikipedia/article/{title}), una pagina di 50 articoli salvati
+ * (GET /api/articles) e la lettura di un articolo dal body di un PUT. L'articolo viene da fixtures/article-roma.json.
+ *
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *     com.openwiki.benchmark.ArticleSerializationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog.level=WARN")
+public class ArticleSerializationBenchmark {
+    private final JavalinJackson jsonMapper = ServerConfig.jsonMapper();
+    private Article article;
+    private List<Article> articles;
+    private String articleJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        article = new WikiResponseParser().parseArticle(
+            new ByteArrayInputStream(WikiResponseParserBenchmark.readFixture("article-roma.json")));
+        article.setDateDownloaded(LocalDateTime.now());
+
+        articles = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Article saved = new Article();
+            saved.setId(String.valueOf(i + 1));
+            saved.setUserId("42");
+            saved.setTitle(article.getTitle() + " " + i);
+            saved.setContent(article.getContent());
+            saved.setImageUrl(article.getImageUrl());
+            saved.setPageId(article.getPageId());
+            saved.setWikiUrl(article.getWikiUrl());
+            saved.setDateDownloaded(article.getDateDownloaded());
+            articles.add(saved);
+        }
+        articleJson = jsonMapper.toJsonString(article, Article.class);
+    }
+
+    @Benchmark
+    public String articleToJson() {
+        return jsonMapper.toJsonString(article, Article.class);
+    }
+
+    @Benchmark
+    public int articleListToJson() throws IOException {
+        // Come ctx.json su una lista: il body va nell'output stream della risposta
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 16);
+        jsonMapper.toJsonStream(articles, (Type) List.class).transferTo(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public Article articleFromJson() {
+        return jsonMapper.fromJsonString(articleJson, Article.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(ArticleSerializationBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
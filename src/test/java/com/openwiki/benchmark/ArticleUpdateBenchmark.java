@@ -0,0 +1,115 @@
+package com.openwiki.benchmark;
+
+import com.openwiki.config.HibernateConfig;
+import com.openwiki.dao.ArticleDAO;
+import com.openwiki.model.Article;
+import com.openwiki.support.EmbeddedDatabase;
+import jakarta.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * PUT /api/articles/{id} su H2: il vecchio percorso (em.find + controllo in Java + em.merge dell'intero
+ * articolo) contro ArticleDAO.updateArticle (un solo UPDATE condizionato con i soli campi cambiati, più la
+ * rilettura della riga per la risposta nella stessa transazione).
+ * Il corpo della richiesta cambia solo il titolo, come un rinomina dal frontend.
+ *
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *     com.openwiki.benchmark.ArticleUpdateBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog.level=WARN")
+public class ArticleUpdateBenchmark {
+    private static final String USER_ID = "9699";
+    private static final String CONTENT = "Roma è la capitale d'Italia. ".repeat(600);
+
+    private final List<Article> saved = new ArrayList<>();
+    private ArticleDAO articleDAO;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        EmbeddedDatabase.configure();
+        System.setProperty("db.showSql", "false");
+        articleDAO = new ArticleDAO();
+        for (int i = 0; i < 200; i++) {
+            Article article = new Article();
+            article.setUserId(USER_ID);
+            article.setTitle("Articolo " + i);
+            article.setContent(CONTENT);
+            article.setWikiUrl("https://it.wikipedia.org/wiki/Articolo_" + i);
+            article.setDateDownloaded(LocalDateTime.now());
+            saved.add(articleDAO.save(article));
+        }
+    }
+
+    private Article nextArticle() {
+        next = (next + 1) % saved.size();
+        return saved.get(next);
+    }
+
+    // Percorso precedente: il PUT deserializzato è un articolo completo, salvato con merge
+    @Benchmark
+    public boolean findAndMerge() {
+        Article source = nextArticle();
+        Article article = new Article();
+        article.setId(source.getId());
+        article.setUserId(USER_ID);
+        article.setTitle("Rinominato " + next);
+        article.setContent(CONTENT);
+        article.setWikiUrl(source.getWikiUrl());
+        article.setDateDownloaded(source.getDateDownloaded());
+
+        EntityManager em = HibernateConfig.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            Article existing = em.find(Article.class, article.getId());
+            if (existing != null && existing.getUserId().equals(USER_ID)) {
+                article.setVersion(existing.getVersion());
+                em.merge(article);
+                em.getTransaction().commit();
+                return true;
+            }
+            em.getTransaction().rollback();
+            return false;
+        } finally {
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public ArticleDAO.UpdateResult conditionalUpdate() throws Exception {
+        Article changes = new Article();
+        changes.setId(nextArticle().getId());
+        changes.setUserId(USER_ID);
+        changes.setTitle("Rinominato " + next);
+        return articleDAO.updateArticle(changes);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(ArticleUpdateBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,169 @@
+package com.openwiki.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openwiki.model.CompressedTextConverter;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Dimensione delle righe e letture prima/dopo la compressione di content, su H2 con le stesse SELECT
+ * che Hibernate genera: la tabella "legacy" ha content TEXT, saved_articles ha content_compressed.
+ * Dataset: l'estratto di fixtures/article-roma.json (20.000 caratteri) ripetuto per ROWS righe.
+ *
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *     com.openwiki.benchmark.ContentStorageBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog.level=WARN")
+public class ContentStorageBenchmark {
+    private static final int ROWS = 500;
+    private static final String COLUMNS = "id, user_id, title, image_url, page_id, wiki_url, date_downloaded";
+
+    private Connection connection;
+    private PreparedStatement ownershipBefore;
+    private PreparedStatement ownershipAfter;
+    private PreparedStatement fullBefore;
+    private PreparedStatement fullAfter;
+    private byte[] compressed;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String extract;
+        try (InputStream in = ContentStorageBenchmark.class.getResourceAsStream("/fixtures/article-roma.json")) {
+            extract = new ObjectMapper().readTree(in).path("query").path("pages").elements().next()
+                .path("extract").asText();
+        }
+        connection = DriverManager.getConnection(
+            "jdbc:h2:mem:content-storage;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;"
+                + "INIT=RUNSCRIPT FROM 'sql/02_create_tables.sql'", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE legacy_articles (id INT AUTO_INCREMENT PRIMARY KEY, user_id INT NOT NULL,"
+                + " title VARCHAR(255) NOT NULL, content TEXT, image_url TEXT, page_id VARCHAR(50), wiki_url TEXT,"
+                + " date_downloaded DATETIME)");
+        }
+        try (PreparedStatement legacy = connection.prepareStatement(
+                 "INSERT INTO legacy_articles (user_id, title, content, wiki_url) VALUES (4, ?, ?, ?)");
+             PreparedStatement current = connection.prepareStatement(
+                 "INSERT INTO saved_articles (user_id, title, content_compressed, wiki_url) VALUES (4, ?, ?, ?)")) {
+            for (int i = 0; i < ROWS; i++) {
+                String content = i + " " + extract;
+                legacy.setString(1, "Roma " + i);
+                legacy.setString(2, content);
+                legacy.setString(3, "https://it.wikipedia.org/wiki/Roma");
+                legacy.addBatch();
+                current.setString(1, "Roma " + i);
+                compressed = CompressedTextConverter.compress(content);
+                current.setBytes(2, compressed);
+                current.setString(3, "https://it.wikipedia.org/wiki/Roma");
+                current.addBatch();
+            }
+            legacy.executeBatch();
+            current.executeBatch();
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet before = statement.executeQuery("SELECT AVG(OCTET_LENGTH(CAST(content AS VARBINARY))) FROM legacy_articles")) {
+            before.next();
+            double beforeBytes = before.getDouble(1);
+            try (ResultSet after = statement.executeQuery("SELECT AVG(OCTET_LENGTH(content_compressed)) FROM saved_articles")) {
+                after.next();
+                System.out.printf("%ncontent bytes per row: TEXT %.0f, compressed %.0f (%.1fx)%n",
+                    beforeBytes, after.getDouble(1), beforeBytes / after.getDouble(1));
+            }
+        }
+
+        ownershipBefore = connection.prepareStatement("SELECT " + COLUMNS + ", content FROM legacy_articles WHERE id = ?");
+        ownershipAfter = connection.prepareStatement("SELECT " + COLUMNS + " FROM saved_articles WHERE id = ?");
+        fullBefore = connection.prepareStatement("SELECT " + COLUMNS + ", content FROM legacy_articles WHERE id = ?");
+        fullAfter = connection.prepareStatement("SELECT " + COLUMNS + ", content_compressed FROM saved_articles WHERE id = ?");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        connection.close();
+    }
+
+    private int nextId() {
+        next = next % ROWS + 1;
+        return next;
+    }
+
+    // Controllo di proprietà di updateArticle: prima em.find caricava anche content
+    @Benchmark
+    public void ownershipCheckBefore(Blackhole blackhole) throws Exception {
+        ownershipBefore.setInt(1, nextId());
+        try (ResultSet rs = ownershipBefore.executeQuery()) {
+            rs.next();
+            blackhole.consume(rs.getString("user_id"));
+            blackhole.consume(rs.getString("content"));
+        }
+    }
+
+    @Benchmark
+    public void ownershipCheckAfter(Blackhole blackhole) throws Exception {
+        ownershipAfter.setInt(1, nextId());
+        try (ResultSet rs = ownershipAfter.executeQuery()) {
+            rs.next();
+            blackhole.consume(rs.getString("user_id"));
+        }
+    }
+
+    // Lettura dell'articolo completo (GET /api/articles/{id})
+    @Benchmark
+    public String fullReadBefore() throws Exception {
+        fullBefore.setInt(1, nextId());
+        try (ResultSet rs = fullBefore.executeQuery()) {
+            rs.next();
+            return rs.getString("content");
+        }
+    }
+
+    @Benchmark
+    public String fullReadAfter() throws Exception {
+        fullAfter.setInt(1, nextId());
+        try (ResultSet rs = fullAfter.executeQuery()) {
+            rs.next();
+            return CompressedTextConverter.decompress(rs.getBytes("content_compressed"));
+        }
+    }
+
+    // Solo il costo di CPU della decompressione, senza il database
+    @Benchmark
+    public String decompressOnly() {
+        return CompressedTextConverter.decompress(compressed);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(ContentStorageBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,58 @@
+package com.openwiki.benchmark;
+
+import com.openwiki.metrics.Metrics;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Costo della strumentazione per singola misura: lookup del Timer in cache e registrazione
+ * nell'istogramma, con più thread che scrivono sulla stessa serie come sotto carico.
+ * Con -Dmetrics.histogramBuckets=false si misura il costo senza i bucket Prometheus.
+ *
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *     com.openwiki.benchmark.MetricsBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class MetricsBenchmark {
+
+    @Benchmark
+    public long baseline() {
+        return System.nanoTime();
+    }
+
+    @Benchmark
+    public void recordDao() {
+        Metrics.recordDao("findById", System.nanoTime());
+    }
+
+    @Benchmark
+    public String timeUpstream() throws Exception {
+        return Metrics.timeUpstream("wikipedia", "article", () -> "ok");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(MetricsBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,178 @@
+package com.openwiki.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.openwiki.middleware.RequestLogging;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Richieste al secondo che il solo logging lascia ai worker, con più thread che loggano insieme:
+ * - legacyPrintln: il vecchio before handler di Main (System.out.println di metodo, path e header) più il body
+ *   di saveArticle, su un PrintStream sincronizzato con autoflush come System.out
+ * - syncInfo: gli stessi messaggi a INFO con logback e un appender sincrono
+ * - asyncInfo: gli stessi messaggi a INFO attraverso l'AsyncAppender di logback.xml
+ * - sampledDebug: il percorso attuale con DEBUG attivo (una richiesta su log.sampleRate, body troncato)
+ * - productionInfo: il percorso attuale a INFO, dove resta solo il controllo del livello
+ * Tutti scrivono su un file temporaneo, così il costo della scrittura è reale ma la console resta pulita.
+ *
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *     com.openwiki.benchmark.RequestLoggingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = "-Dlog.level=WARN")
+public class RequestLoggingBenchmark {
+    private static final String METHOD = "POST";
+    private static final String PATH = "/api/articles";
+    private static final String BODY = "{\"title\":\"Roma\",\"content\":\"" + "Roma è la capitale d'Italia. ".repeat(700) + "\"}";
+    private static final Map<String, String> HEADERS = new LinkedHashMap<>();
+
+    static {
+        HEADERS.put("Host", "localhost:8080");
+        HEADERS.put("User-Agent", "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0");
+        HEADERS.put("Accept", "application/json, text/plain, */*");
+        HEADERS.put("Accept-Language", "it-IT,it;q=0.9,en-US;q=0.8,en;q=0.7");
+        HEADERS.put("Accept-Encoding", "gzip, deflate, br");
+        HEADERS.put("Content-Type", "application/json");
+        HEADERS.put("Origin", "http://localhost:3000");
+        HEADERS.put("Referer", "http://localhost:3000/articles");
+        HEADERS.put("Cookie", "session=eyJ1c2VyX2lkIjo0MiwiX3Blcm1hbmVudCI6dHJ1ZX0.ZVPxAA.lzpTQ9sW7MG-J2vv-OKTPwS1PeE");
+        HEADERS.put("Connection", "keep-alive");
+    }
+
+    private File file;
+    private PrintStream printStream;
+    private OutputStreamAppender<ILoggingEvent> sink;
+    private AsyncAppender async;
+    private Logger syncLogger;
+    private Logger asyncLogger;
+    private Logger debugLogger;
+    private Logger infoLogger;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = File.createTempFile("request-logging", ".log");
+        printStream = new PrintStream(new FileOutputStream(file, true), true);
+
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{HH:mm:ss.SSS} [%thread] %-5level %logger{36} - %msg%n");
+        encoder.start();
+        sink = new OutputStreamAppender<>();
+        sink.setContext(context);
+        sink.setEncoder(encoder);
+        sink.setOutputStream(new FileOutputStream(file, true));
+        sink.start();
+
+        async = new AsyncAppender();
+        async.setContext(context);
+        async.setQueueSize(8192);
+        async.setNeverBlock(true);
+        async.addAppender(sink);
+        async.start();
+
+        syncLogger = logger(context, "benchmark.sync", ch.qos.logback.classic.Level.INFO, sink);
+        asyncLogger = logger(context, "benchmark.async", ch.qos.logback.classic.Level.INFO, async);
+        debugLogger = logger(context, "benchmark.debug", ch.qos.logback.classic.Level.DEBUG, async);
+        infoLogger = logger(context, "benchmark.info", ch.qos.logback.classic.Level.INFO, async);
+    }
+
+    private static Logger logger(LoggerContext context, String name, ch.qos.logback.classic.Level level,
+                                 Appender<ILoggingEvent> appender) {
+        ch.qos.logback.classic.Logger logger = context.getLogger(name);
+        logger.setLevel(level);
+        logger.setAdditive(false);
+        logger.addAppender(appender);
+        return logger;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        async.stop();
+        sink.stop();
+        printStream.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public void legacyPrintln() {
+        printStream.println("Incoming request: " + METHOD + " " + PATH);
+        printStream.println("Headers: " + new LinkedHashMap<>(HEADERS));
+        printStream.println("Received request body: " + BODY);
+    }
+
+    @Benchmark
+    public void syncInfo() {
+        logRequest(syncLogger);
+    }
+
+    @Benchmark
+    public void asyncInfo() {
+        logRequest(asyncLogger);
+    }
+
+    private static void logRequest(Logger logger) {
+        logger.info("Incoming request: {} {} headers={}", METHOD, PATH, new LinkedHashMap<>(HEADERS));
+        logger.info("Received request body: {}", BODY);
+    }
+
+    @Benchmark
+    public void sampledDebug() {
+        currentPath(debugLogger);
+    }
+
+    @Benchmark
+    public void productionInfo() {
+        currentPath(infoLogger);
+    }
+
+    // Main.before e WikiController.saveArticle
+    private static void currentPath(Logger logger) {
+        if (logger.isDebugEnabled() && RequestLogging.sampled()) {
+            logger.debug("Incoming request: {} {} headers={}", METHOD, PATH, RequestLogging.headers(HEADERS));
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Received request body: {}", RequestLogging.truncate(BODY));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(RequestLoggingBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,92 @@
+package com.openwiki.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openwiki.middleware.SessionDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Costo per richiesta della lettura dello userId dal cookie di sessione: vecchio extractUserId
+ * (split con regex + String + readTree + log) contro SessionDecoder con e senza verifica HMAC,
+ * e con la cache per cookie.
+ *
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *     com.openwiki.benchmark.SessionDecoderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog.level=WARN")
+public class SessionDecoderBenchmark {
+    private static final Logger logger = LoggerFactory.getLogger(SessionDecoderBenchmark.class);
+    // Firmato con itsdangerous, secret "dev-secret-key"
+    private static final String COOKIE =
+        "eyJ1c2VyX2lkIjo0MiwiX3Blcm1hbmVudCI6dHJ1ZX0.ZVPxAA.lzpTQ9sW7MG-J2vv-OKTPwS1PeE";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SessionDecoder verifying;
+    private SessionDecoder unverified;
+
+    @Setup
+    public void setUp() {
+        verifying = new SessionDecoder("dev-secret-key", null, 10_000, Duration.ofMinutes(5));
+        unverified = new SessionDecoder(null, null, 10_000, Duration.ofMinutes(5));
+    }
+
+    // Percorso precedente di WikiController.extractUserId
+    @Benchmark
+    public String legacyExtract() throws Exception {
+        String[] parts = COOKIE.split("\\.");
+        String jsonStr = new String(Base64.getUrlDecoder().decode(parts[0]), StandardCharsets.UTF_8);
+        logger.info("Decoded session payload: {}", jsonStr);
+        JsonNode jsonNode = objectMapper.readTree(jsonStr);
+        String userId = jsonNode.get("user_id").asText();
+        logger.info("Extracted user ID: {}", userId);
+        return userId;
+    }
+
+    @Benchmark
+    public String decodeUnverified() {
+        return unverified.decodeUserId(COOKIE);
+    }
+
+    @Benchmark
+    public String decodeVerified() {
+        return verifying.decodeUserId(COOKIE);
+    }
+
+    @Benchmark
+    public String cachedLookup() {
+        return verifying.userId(COOKIE);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(SessionDecoderBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
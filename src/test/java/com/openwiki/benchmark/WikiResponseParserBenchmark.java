@@ -0,0 +1,109 @@
+package com.openwiki.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openwiki.model.Article;
+import com.openwiki.model.WikiSearchResult;
+import com.openwiki.service.WikiResponseParser;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Parsing delle risposte MediaWiki: albero JsonNode su String (percorso precedente)
+ * contro JsonParser in streaming sull'InputStream. Il profiler GC riporta gc.alloc.rate.norm
+ * (byte allocati per operazione).
+ *
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) \
+ *     com.openwiki.benchmark.WikiResponseParserBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog.level=WARN")
+public class WikiResponseParserBenchmark {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final WikiResponseParser parser = new WikiResponseParser();
+    private byte[] articleBody;
+    private byte[] searchBody;
+
+    @Setup
+    public void loadFixtures() throws IOException {
+        articleBody = readFixture("article-roma.json");
+        searchBody = readFixture("search-roma.json");
+    }
+
+    static byte[] readFixture(String name) throws IOException {
+        try (InputStream in = WikiResponseParserBenchmark.class.getResourceAsStream("/fixtures/" + name)) {
+            return in.readAllBytes();
+        }
+    }
+
+    // Percorso precedente: BodyHandlers.ofString() + readTree
+    @Benchmark
+    public Article articleTree() throws IOException {
+        JsonNode page = objectMapper.readTree(new String(articleBody, StandardCharsets.UTF_8))
+            .path("query").path("pages").elements().next();
+        Article article = new Article();
+        article.setTitle(page.path("title").asText());
+        String content = page.path("extract").asText(null);
+        article.setContent(content == null || content.isEmpty() ? "Contenuto non disponibile" : content);
+        article.setPageId(page.path("pageid").asText());
+        article.setWikiUrl(page.path("fullurl").asText());
+        if (page.has("thumbnail")) {
+            article.setImageUrl(page.path("thumbnail").path("source").asText());
+        }
+        return article;
+    }
+
+    @Benchmark
+    public Article articleStreaming() throws IOException {
+        return parser.parseArticle(new ByteArrayInputStream(articleBody));
+    }
+
+    @Benchmark
+    public List<WikiSearchResult> searchTree() throws IOException {
+        List<WikiSearchResult> results = new ArrayList<>();
+        for (JsonNode result : objectMapper.readTree(new String(searchBody, StandardCharsets.UTF_8)).path("query").path("search")) {
+            String title = result.path("title").asText();
+            results.add(new WikiSearchResult(title, result.path("snippet").asText(), result.path("pageid").asText(),
+                "https://it.wikipedia.org/wiki/" + URLEncoder.encode(title, StandardCharsets.UTF_8)));
+        }
+        return results;
+    }
+
+    @Benchmark
+    public List<WikiSearchResult> searchStreaming() throws IOException {
+        return parser.parseSearchResults(new ByteArrayInputStream(searchBody));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(WikiResponseParserBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,84 @@
+package com.openwiki.config;
+
+import com.openwiki.dao.ArticleDAO;
+import com.openwiki.model.Article;
+import com.openwiki.support.EmbeddedDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatabasePoolTest {
+    private static final int MAX_POOL_SIZE = EmbeddedDatabase.POOL_SIZE;
+
+    @BeforeAll
+    static void setUp() {
+        EmbeddedDatabase.configure();
+    }
+
+    @Test
+    void getConnection_reusesPhysicalConnections() throws Exception {
+        Connection first;
+        try (Connection connection = DatabaseConfig.getConnection()) {
+            first = connection.unwrap(Connection.class);
+        }
+        for (int i = 0; i < 100; i++) {
+            try (Connection connection = DatabaseConfig.getConnection()) {
+                // Stesso thread, pool inattivo: Hikari restituisce l'ultima connessione usata
+                assertSame(first, connection.unwrap(Connection.class));
+            }
+        }
+
+        Map<String, Object> stats = DatabaseConfig.poolStats();
+        assertEquals(0, stats.get("active"));
+        assertTrue((int) stats.get("total") <= MAX_POOL_SIZE);
+        assertEquals(MAX_POOL_SIZE, stats.get("maximumPoolSize"));
+    }
+
+    @Test
+    void hibernateAndJdbc_shareTheSamePool() throws Exception {
+        ArticleDAO articleDAO = new ArticleDAO();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                int n = i;
+                results.add(executor.submit(() -> {
+                    if (n % 4 == 0) {
+                        try (Connection connection = DatabaseConfig.getConnection()) {
+                            connection.createStatement().execute("SELECT 1");
+                        }
+                    } else if (n % 4 == 1) {
+                        Article article = new Article();
+                        article.setUserId("9001");
+                        article.setTitle("Articolo " + n);
+                        article.setContent("Contenuto");
+                        article.setDateDownloaded(LocalDateTime.now());
+                        articleDAO.save(article);
+                    } else {
+                        articleDAO.findByUserId("9001");
+                    }
+                    return null;
+                }));
+            }
+            // Con 16 thread e 4 connessioni le richieste attendono il pool invece di fallire
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Map<String, Object> stats = DatabaseConfig.poolStats();
+        assertEquals(0, stats.get("active"));
+        assertTrue((int) stats.get("total") <= MAX_POOL_SIZE);
+        assertEquals(50, articleDAO.findByUserId("9001").size());
+    }
+}
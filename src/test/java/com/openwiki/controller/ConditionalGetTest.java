@@ -0,0 +1,136 @@
+package com.openwiki.controller;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.openwiki.cache.ArticleCache;
+import com.openwiki.cache.SearchCache;
+import com.openwiki.config.ServerConfig;
+import com.openwiki.dao.ArticleDAO;
+import com.openwiki.model.Article;
+import com.openwiki.service.WikiService;
+import com.openwiki.support.EmbeddedDatabase;
+import com.openwiki.support.StubServer;
+import io.javalin.Javalin;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConditionalGetTest {
+    private static final String USER_ID = "9701";
+    private static final String CONTENT = "Torino fu la prima capitale del Regno d'Italia. ".repeat(200);
+
+    private static final HttpClient client = HttpClient.newHttpClient();
+    private static StubServer upstream;
+    private static Javalin app;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        EmbeddedDatabase.configure();
+        upstream = new StubServer(exchange -> StubServer.Response.ok("{\"query\":{\"pages\":{\"42\":{\"pageid\":42,"
+            + "\"title\":\"" + StubServer.queryParam(exchange, "titles") + "\",\"extract\":\"" + CONTENT + "\","
+            + "\"touched\":\"2024-11-02T10:14:03Z\",\"lastrevid\":1234}}}}"));
+        WikiController controller = new WikiController(new WikiService(upstream.baseUrl(),
+            new ArticleCache(1024 * 1024, Duration.ofMinutes(5)), SearchCache.fromConfig()), new ArticleDAO());
+        app = Javalin.create(ServerConfig::applyCompression);
+        app.before("/api/articles*", ctx -> ctx.attribute("userId", USER_ID));
+        app.get("/api/articles", controller::getUserArticles);
+        app.get("/api/articles/{id}", controller::getUserArticle);
+        app.put("/api/articles/{id}", controller::updateArticle);
+        app.get("/api/wikipedia/article/{title}", controller::getArticle);
+        app.start(0);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        app.stop();
+        upstream.close();
+    }
+
+    private static HttpResponse<byte[]> send(HttpRequest.Builder request) throws Exception {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + app.port() + path));
+    }
+
+    @Test
+    void wikipediaArticle_revalidatesWithoutBody() throws Exception {
+        int requests = upstream.requestCount();
+        HttpResponse<byte[]> first = send(get("/api/wikipedia/article/Torino"));
+        assertEquals(200, first.statusCode());
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+        assertEquals("W/\"w42-r1234\"", etag);
+        assertEquals(List.of("Accept-Encoding"), first.headers().allValues("Vary"));
+        // Giorno a una cifra: IMF-fixdate lo scrive comunque a due
+        assertEquals("Sat, 02 Nov 2024 10:14:03 GMT", first.headers().firstValue("Last-Modified").orElseThrow());
+
+        HttpResponse<byte[]> second = send(get("/api/wikipedia/article/Torino").header("If-None-Match", etag));
+        assertEquals(304, second.statusCode());
+        assertEquals(0, second.body().length);
+        assertEquals(requests + 1, upstream.requestCount());
+    }
+
+    @Test
+    void savedArticles_etagChangesAfterUpdate() throws Exception {
+        Article article = new Article();
+        article.setUserId(USER_ID);
+        article.setTitle("Torino");
+        article.setContent(CONTENT);
+        article.setDateDownloaded(LocalDateTime.of(2020, 1, 1, 12, 0));
+        String id = new ArticleDAO().save(article).getId();
+
+        String listEtag = send(get("/api/articles")).headers().firstValue("ETag").orElseThrow();
+        String articleEtag = send(get("/api/articles/" + id)).headers().firstValue("ETag").orElseThrow();
+        assertEquals(304, send(get("/api/articles").header("If-None-Match", listEtag)).statusCode());
+        assertEquals(304, send(get("/api/articles/" + id).header("If-None-Match", "\"x\", " + articleEtag)).statusCode());
+
+        HttpResponse<byte[]> updated = send(get("/api/articles/" + id).method("PUT",
+            HttpRequest.BodyPublishers.ofString("{\"title\":\"Torino capitale\"}")));
+        assertEquals(200, updated.statusCode());
+        // La risposta è l'articolo salvato, non il body parziale del PUT
+        String body = new String(updated.body(), StandardCharsets.UTF_8);
+        assertTrue(body.contains("\"title\":\"Torino capitale\""));
+        assertTrue(body.contains("\"version\":1"));
+        assertTrue(body.contains("\"content\":\"Torino fu la prima capitale"));
+        HttpResponse<byte[]> list = send(get("/api/articles").header("If-None-Match", listEtag));
+        assertEquals(200, list.statusCode());
+        assertNotEquals(listEtag, list.headers().firstValue("ETag").orElseThrow());
+        HttpResponse<byte[]> changed = send(get("/api/articles/" + id).header("If-None-Match", articleEtag));
+        assertEquals(200, changed.statusCode());
+        // Last-Modified viene da updated_at, non dalla data di download
+        Instant lastModified = ZonedDateTime.parse(changed.headers().firstValue("Last-Modified").orElseThrow(),
+            DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        assertTrue(lastModified.isAfter(Instant.now().minusSeconds(60)), "Last-Modified " + lastModified);
+    }
+
+    @Test
+    void largeResponses_areCompressed() throws Exception {
+        HttpResponse<byte[]> gzip = send(get("/api/wikipedia/article/Milano").header("Accept-Encoding", "gzip"));
+        assertEquals("gzip", gzip.headers().firstValue("Content-Encoding").orElseThrow());
+        assertTrue(gzip.body().length < CONTENT.length() / 10, "gzip body " + gzip.body().length + " bytes");
+
+        HttpResponse<byte[]> brotli = send(get("/api/wikipedia/article/Milano").header("Accept-Encoding", "gzip, br"));
+        assertEquals(Brotli4jLoader.isAvailable() ? "br" : "gzip", brotli.headers().firstValue("Content-Encoding").orElseThrow());
+
+        HttpResponse<byte[]> plain = send(get("/api/wikipedia/article/Milano"));
+        assertTrue(plain.headers().firstValue("Content-Encoding").isEmpty());
+        assertTrue(plain.body().length > CONTENT.length());
+
+        // Sotto la soglia la risposta resta in chiaro
+        HttpResponse<byte[]> notFound = send(get("/api/articles/999999").header("Accept-Encoding", "gzip"));
+        assertEquals(404, notFound.statusCode());
+        assertTrue(notFound.headers().firstValue("Content-Encoding").isEmpty());
+    }
+}
@@ -0,0 +1,117 @@
+package com.openwiki.dao;
+
+import com.openwiki.config.DatabaseConfig;
+import com.openwiki.dao.ArticleDAO.UpdateResult;
+import com.openwiki.model.Article;
+import com.openwiki.support.EmbeddedDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArticleBatchWriterTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 6, 1, 8, 0);
+    private static final ArticleDAO articleDAO = new ArticleDAO();
+
+    @BeforeAll
+    static void setUp() {
+        EmbeddedDatabase.configure();
+    }
+
+    private static Article article(String userId, int n) {
+        Article article = new Article();
+        article.setUserId(userId);
+        article.setTitle("Importato " + n);
+        article.setContent("Contenuto " + n);
+        article.setWikiUrl("https://it.wikipedia.org/wiki/Importato_" + n);
+        article.setDateDownloaded(BASE.plusMinutes(n));
+        return article;
+    }
+
+    @Test
+    void batchWriter_persistsAllRowsAndStreamsThemBack() throws Exception {
+        try (ArticleBatchWriter writer = new ArticleBatchWriter(100)) {
+            for (int i = 0; i < 250; i++) {
+                writer.add(article("9301", i));
+            }
+            assertEquals(200, writer.getCommitted());
+            writer.flush();
+            assertEquals(250, writer.getCommitted());
+        }
+
+        List<Article> exported;
+        try (Stream<Article> articles = articleDAO.streamByUserId("9301")) {
+            exported = articles.collect(Collectors.toList());
+        }
+        assertEquals(250, exported.size());
+        assertEquals("Importato 249", exported.get(0).getTitle());
+        assertEquals("Contenuto 249", exported.get(0).getContent());
+        assertEquals("Importato 0", exported.get(249).getTitle());
+        assertNotNull(exported.get(0).getId());
+    }
+
+    @Test
+    void close_withoutFlush_rollsBackPendingBatch() throws Exception {
+        try (ArticleBatchWriter writer = new ArticleBatchWriter(100)) {
+            for (int i = 0; i < 150; i++) {
+                writer.add(article("9302", i));
+            }
+        }
+
+        assertEquals(100, articleDAO.findByUserId("9302").size());
+    }
+
+    @Test
+    void flush_evictsCachedUserListing() throws Exception {
+        articleDAO.save(article("9303", 0));
+        assertEquals(1, articleDAO.findByUserId("9303").size());
+
+        try (ArticleBatchWriter writer = new ArticleBatchWriter(100)) {
+            writer.add(article("9303", 1));
+            writer.add(article("9303", 2));
+            writer.flush();
+        }
+
+        // Senza lo sfratto della regione la query in cache restituirebbe ancora un solo articolo
+        assertEquals(3, articleDAO.findByUserId("9303").size());
+    }
+
+    @Test
+    void importedRow_withoutColumnDefaults_canBeUpdated() throws Exception {
+        // Come uno schema creato da hbm2ddl: version e updated_at senza DEFAULT
+        alterDefaults("ALTER TABLE saved_articles ALTER COLUMN version DROP DEFAULT",
+            "ALTER TABLE saved_articles ALTER COLUMN updated_at DROP DEFAULT");
+        try (ArticleBatchWriter writer = new ArticleBatchWriter(100)) {
+            writer.add(article("9304", 0));
+            writer.flush();
+        } finally {
+            alterDefaults("ALTER TABLE saved_articles ALTER COLUMN version SET DEFAULT 0",
+                "ALTER TABLE saved_articles ALTER COLUMN updated_at SET DEFAULT CURRENT_TIMESTAMP");
+        }
+
+        Article imported = articleDAO.findByUserId("9304").get(0);
+        assertEquals(0L, imported.getVersion());
+        assertNotNull(imported.getUpdatedAt());
+
+        Article changes = new Article();
+        changes.setId(imported.getId());
+        changes.setUserId("9304");
+        changes.setTitle("Importato e rinominato");
+        changes.setVersion(0L);
+        assertEquals(UpdateResult.UPDATED, articleDAO.updateArticle(changes));
+        assertEquals(1L, changes.getVersion());
+    }
+
+    private static void alterDefaults(String... statements) throws Exception {
+        try (Connection connection = DatabaseConfig.getConnection(); Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.openwiki.dao;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.openwiki.config.DatabaseConfig;
+import com.openwiki.config.HibernateConfig;
+import com.openwiki.model.Article;
+import com.openwiki.model.CompressedTextConverter;
+import com.openwiki.support.EmbeddedDatabase;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArticleContentStorageTest {
+    private static final String CONTENT = "Roma è la capitale d'Italia e del Lazio. ".repeat(100);
+    private static final ArticleDAO articleDAO = new ArticleDAO();
+
+    @BeforeAll
+    static void setUp() {
+        EmbeddedDatabase.configure();
+    }
+
+    private static Article save(String userId, String title) throws Exception {
+        Article article = new Article();
+        article.setUserId(userId);
+        article.setTitle(title);
+        article.setContent(CONTENT);
+        article.setDateDownloaded(LocalDateTime.now());
+        return articleDAO.save(article);
+    }
+
+    private static long statements() {
+        EntityManager em = HibernateConfig.getEntityManager();
+        try {
+            Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+            return statistics.getPrepareStatementCount();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    void content_isStoredCompressed() throws Exception {
+        String id = save("9501", "Roma").getId();
+
+        try (Connection connection = DatabaseConfig.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                 "SELECT content_compressed FROM saved_articles WHERE id = ?")) {
+            statement.setInt(1, Integer.parseInt(id));
+            try (ResultSet rs = statement.executeQuery()) {
+                assertTrue(rs.next());
+                byte[] stored = rs.getBytes(1);
+                assertTrue(stored.length < CONTENT.length() / 10, "stored " + stored.length + " bytes");
+                assertEquals(CONTENT, CompressedTextConverter.decompress(stored));
+            }
+        }
+    }
+
+    @Test
+    void ownershipLookup_doesNotLoadContent() throws Exception {
+        String id = save("9502", "Milano").getId();
+
+        Article article = articleDAO.findById(id).orElseThrow();
+        assertFalse(Hibernate.isPropertyInitialized(article, "content"));
+        assertTrue(articleDAO.findByIdForUser(id, "9999").isEmpty());
+        assertEquals(CONTENT, articleDAO.findByIdForUser(id, "9502").orElseThrow().getContent());
+    }
+
+    @Test
+    void fullListings_loadContentInOneStatement() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            save("9503", "Articolo " + i);
+        }
+
+        long before = statements();
+        List<Article> articles = articleDAO.findByUserId("9503");
+        assertEquals(before + 1, statements());
+        // Anche dalla cache delle query l'articolo arriva completo e serializzabile
+        articles = articleDAO.findByUserId("9503");
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        JsonNode json = objectMapper.valueToTree(articles);
+        assertEquals(5, json.size());
+        assertEquals(CONTENT, json.get(0).get("content").asText());
+        assertEquals(List.of("id", "userId", "title", "content", "imageUrl", "dateDownloaded", "pageId", "wikiUrl", "version"),
+            fieldNames(json.get(0)));
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+}
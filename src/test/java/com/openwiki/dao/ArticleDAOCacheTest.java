@@ -0,0 +1,73 @@
+package com.openwiki.dao;
+
+import com.openwiki.config.HibernateConfig;
+import com.openwiki.model.Article;
+import com.openwiki.support.EmbeddedDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArticleDAOCacheTest {
+    private static final ArticleDAO articleDAO = new ArticleDAO();
+
+    @BeforeAll
+    static void setUp() {
+        EmbeddedDatabase.configure();
+    }
+
+    private static Article save(String userId, String title) throws Exception {
+        Article article = new Article();
+        article.setUserId(userId);
+        article.setTitle(title);
+        article.setContent("Contenuto di " + title);
+        article.setDateDownloaded(LocalDateTime.now());
+        return articleDAO.save(article);
+    }
+
+    private static long stat(String name) {
+        return (long) HibernateConfig.cacheStats().get(name);
+    }
+
+    @Test
+    void findById_isServedFromSecondLevelCache() throws Exception {
+        String id = save("9201", "Roma").getId();
+        articleDAO.findById(id);
+
+        long hits = stat("secondLevelHits");
+        articleDAO.findById(id);
+        articleDAO.findById(id);
+        articleDAO.findByIdForUser(id, "9201");
+
+        assertEquals(hits + 3, stat("secondLevelHits"));
+    }
+
+    @Test
+    void findByUserId_usesQueryCacheAndSeesWrites() throws Exception {
+        Article roma = save("9202", "Roma");
+
+        assertEquals(1, articleDAO.findByUserId("9202").size());
+        long queryHits = stat("queryHits");
+        assertEquals(1, articleDAO.findByUserId("9202").size());
+        assertEquals(queryHits + 1, stat("queryHits"));
+
+        // save: la cache delle query non deve restituire l'elenco precedente
+        Article milano = save("9202", "Milano");
+        assertEquals(2, articleDAO.findByUserId("9202").size());
+
+        // updateArticle: l'entità in cache viene aggiornata
+        roma.setTitle("Roma Capitale");
+        assertEquals(ArticleDAO.UpdateResult.UPDATED, articleDAO.updateArticle(roma));
+        assertEquals("Roma Capitale", articleDAO.findById(roma.getId()).orElseThrow().getTitle());
+        assertTrue(articleDAO.findByUserId("9202").stream().anyMatch(a -> a.getTitle().equals("Roma Capitale")));
+
+        // deleteArticle: né l'elenco né findById vedono più l'articolo
+        assertTrue(articleDAO.deleteArticle(milano.getId(), "9202"));
+        List<Article> remaining = articleDAO.findByUserId("9202");
+        assertEquals(1, remaining.size());
+        assertEquals(roma.getId(), remaining.get(0).getId());
+        assertTrue(articleDAO.findById(milano.getId()).isEmpty());
+        assertEquals(1, articleDAO.findSummariesByUserId("9202", null, 10).getItems().size());
+    }
+}
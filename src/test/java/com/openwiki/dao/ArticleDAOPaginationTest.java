@@ -0,0 +1,115 @@
+package com.openwiki.dao;
+
+import com.openwiki.config.DatabaseConfig;
+import com.openwiki.model.Article;
+import com.openwiki.model.ArticlePage;
+import com.openwiki.model.ArticleSummary;
+import com.openwiki.support.EmbeddedDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArticleDAOPaginationTest {
+    private static final String USER_ID = "9101";
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 5, 1, 12, 0);
+    private static final ArticleDAO articleDAO = new ArticleDAO();
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        EmbeddedDatabase.configure();
+        // 25 articoli: date a coppie uguali per verificare lo spareggio su id, più due senza data
+        for (int i = 0; i < 23; i++) {
+            save(USER_ID, "Articolo " + i, BASE.plusMinutes(i / 2));
+        }
+        save(USER_ID, "Senza data 1", null);
+        save(USER_ID, "Senza data 2", null);
+        save("9102", "Altro utente", BASE);
+    }
+
+    private static Article save(String userId, String title, LocalDateTime date) throws Exception {
+        Article article = new Article();
+        article.setUserId(userId);
+        article.setTitle(title);
+        article.setContent("Contenuto di " + title);
+        article.setDateDownloaded(date);
+        return articleDAO.save(article);
+    }
+
+    @Test
+    void findSummariesByUserId_pagesThroughAllArticlesInOrder() {
+        List<ArticleSummary> all = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        do {
+            ArticlePage page = articleDAO.findSummariesByUserId(USER_ID, cursor, 10);
+            all.addAll(page.getItems());
+            pageSizes.add(page.getItems().size());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(List.of(10, 10, 5), pageSizes);
+        Set<String> ids = new HashSet<>();
+        for (ArticleSummary summary : all) {
+            assertTrue(ids.add(summary.getId()), "duplicate " + summary.getId());
+        }
+        assertEquals("Articolo 22", all.get(0).getTitle());
+        assertNull(all.get(24).getDateDownloaded());
+        for (int i = 1; i < 23; i++) {
+            ArticleSummary previous = all.get(i - 1);
+            ArticleSummary current = all.get(i);
+            int byDate = current.getDateDownloaded().compareTo(previous.getDateDownloaded());
+            assertTrue(byDate < 0 || (byDate == 0
+                && Integer.parseInt(current.getId()) < Integer.parseInt(previous.getId())));
+        }
+    }
+
+    @Test
+    void findSummariesByUserId_exactPageSize_hasNoNextCursor() {
+        ArticlePage page = articleDAO.findSummariesByUserId(USER_ID, null, 25);
+
+        assertEquals(25, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void findSummariesByUserId_invalidCursor_isRejected() {
+        assertThrows(IllegalArgumentException.class,
+            () -> articleDAO.findSummariesByUserId(USER_ID, "bm9uLXZhbGlkbw", 10));
+        assertThrows(IllegalArgumentException.class,
+            () -> articleDAO.findSummariesByUserId(USER_ID, "%%%", 10));
+    }
+
+    @Test
+    void streamByUserId_followsListingOrder_andCanStopEarly() {
+        List<String> listed = new ArrayList<>();
+        for (ArticleSummary summary : articleDAO.findSummariesByUserId(USER_ID, null, 25).getItems()) {
+            listed.add(summary.getId());
+        }
+
+        try (Stream<Article> articles = articleDAO.streamByUserId(USER_ID)) {
+            assertEquals(listed, articles.map(Article::getId).collect(Collectors.toList()));
+        }
+        // Chiudere lo stream a metà rilascia sessione e connessione
+        for (int i = 0; i < 10; i++) {
+            try (Stream<Article> articles = articleDAO.streamByUserId(USER_ID)) {
+                assertEquals("Contenuto di Articolo 22", articles.findFirst().orElseThrow().getContent());
+            }
+        }
+        assertEquals(0, DatabaseConfig.poolStats().get("active"));
+    }
+
+    @Test
+    void findByIdForUser_returnsContentOnlyToOwner() {
+        String id = articleDAO.findSummariesByUserId(USER_ID, null, 1).getItems().get(0).getId();
+
+        assertEquals("Contenuto di Articolo 22", articleDAO.findByIdForUser(id, USER_ID).orElseThrow().getContent());
+        assertTrue(articleDAO.findByIdForUser(id, "9102").isEmpty());
+    }
+}
@@ -0,0 +1,53 @@
+package com.openwiki.dao;
+
+import com.openwiki.model.Article;
+import com.openwiki.model.SearchHit;
+import com.openwiki.support.EmbeddedDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArticleDAOSearchTest {
+    private static final String USER_ID = "9401";
+    private static final ArticleDAO articleDAO = new ArticleDAO();
+
+    @BeforeAll
+    static void setUp() {
+        EmbeddedDatabase.configure();
+    }
+
+    private static Article article(String title, String content) {
+        Article article = new Article();
+        article.setUserId(USER_ID);
+        article.setTitle(title);
+        article.setContent(content);
+        article.setDateDownloaded(LocalDateTime.now());
+        return article;
+    }
+
+    @Test
+    void search_followsSaveDeleteAndImport() throws Exception {
+        Article torino = articleDAO.save(article("Torino", "Torino fu la prima capitale del Regno d'Italia."));
+        articleDAO.save(article("Napoli", "Napoli è affacciata sul golfo."));
+
+        List<SearchHit> hits = articleDAO.search(USER_ID, "capitale", 10);
+        assertEquals(1, hits.size());
+        assertEquals(torino.getId(), hits.get(0).getId());
+
+        // Indice già in memoria: save e delete lo aggiornano senza ricostruirlo
+        articleDAO.save(article("Firenze", "Firenze fu capitale dopo Torino."));
+        assertEquals(2, articleDAO.search(USER_ID, "capitale", 10).size());
+        assertTrue(articleDAO.deleteArticle(torino.getId(), USER_ID));
+        assertEquals(List.of("Firenze"), articleDAO.search(USER_ID, "capitale", 10).stream()
+            .map(SearchHit::getTitle).collect(Collectors.toList()));
+
+        try (ArticleBatchWriter writer = articleDAO.batchWriter()) {
+            writer.add(article("Roma", "Roma è capitale dal 1871."));
+            writer.flush();
+        }
+        assertEquals(2, articleDAO.search(USER_ID, "capitale", 10).size());
+    }
+}
@@ -0,0 +1,103 @@
+package com.openwiki.dao;
+
+import com.openwiki.dao.ArticleDAO.UpdateResult;
+import com.openwiki.model.Article;
+import com.openwiki.support.EmbeddedDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import java.time.LocalDateTime;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArticleDAOUpdateTest {
+    private static final ArticleDAO articleDAO = new ArticleDAO();
+
+    @BeforeAll
+    static void setUp() {
+        EmbeddedDatabase.configure();
+    }
+
+    private static Article save(String userId, String title) throws Exception {
+        Article article = new Article();
+        article.setUserId(userId);
+        article.setTitle(title);
+        article.setContent("Contenuto di " + title);
+        article.setWikiUrl("https://it.wikipedia.org/wiki/" + title);
+        article.setDateDownloaded(LocalDateTime.now());
+        return articleDAO.save(article);
+    }
+
+    private static Article changes(Article saved, String userId) {
+        Article changes = new Article();
+        changes.setId(saved.getId());
+        changes.setUserId(userId);
+        return changes;
+    }
+
+    @Test
+    void updateArticle_appliesOnlyPresentFields() throws Exception {
+        Article saved = save("9601", "Genova");
+        assertEquals(0L, saved.getVersion());
+
+        Article changes = changes(saved, "9601");
+        changes.setTitle("Genova la Superba");
+        assertEquals(UpdateResult.UPDATED, articleDAO.updateArticle(changes));
+
+        Article stored = articleDAO.findByIdForUser(saved.getId(), "9601").orElseThrow();
+        assertEquals("Genova la Superba", stored.getTitle());
+        assertEquals("Contenuto di Genova", stored.getContent());
+        assertEquals("https://it.wikipedia.org/wiki/Genova", stored.getWikiUrl());
+        assertEquals(1L, stored.getVersion());
+    }
+
+    @Test
+    void updateArticle_withStaleVersion_isRejected() throws Exception {
+        Article saved = save("9602", "Bologna");
+
+        Article first = changes(saved, "9602");
+        first.setContent("Prima modifica");
+        first.setVersion(0L);
+        assertEquals(UpdateResult.UPDATED, articleDAO.updateArticle(first));
+        assertEquals(1L, first.getVersion());
+
+        Article second = changes(saved, "9602");
+        second.setContent("Seconda modifica, basata sulla versione 0");
+        second.setVersion(0L);
+        assertEquals(UpdateResult.CONFLICT, articleDAO.updateArticle(second));
+
+        assertEquals("Prima modifica", articleDAO.findByIdForUser(saved.getId(), "9602").orElseThrow().getContent());
+    }
+
+    @Test
+    void updateArticle_ofAnotherUser_isNotFound() throws Exception {
+        Article saved = save("9603", "Torino");
+
+        Article changes = changes(saved, "9604");
+        changes.setTitle("Rubato");
+        changes.setVersion(0L);
+        assertEquals(UpdateResult.NOT_FOUND, articleDAO.updateArticle(changes));
+        assertThrows(IllegalArgumentException.class, () -> articleDAO.updateArticle(changes(saved, "9603")));
+
+        assertEquals("Torino", articleDAO.findByIdForUser(saved.getId(), "9603").orElseThrow().getTitle());
+    }
+
+    @Test
+    void updateArticle_refreshesSecondLevelCache() throws Exception {
+        Article saved = save("9605", "Palermo");
+        // Letto una volta: l'entità è ora nella cache di secondo livello
+        assertEquals("Palermo", articleDAO.findByIdForUser(saved.getId(), "9605").orElseThrow().getTitle());
+
+        Article changes = changes(saved, "9605");
+        changes.setTitle("Palermo felicissima");
+        assertEquals(UpdateResult.UPDATED, articleDAO.updateArticle(changes));
+        // changes torna con lo stato salvato, senza bisogno di rileggere l'articolo
+        assertEquals(1L, changes.getVersion());
+        assertEquals("Contenuto di Palermo", changes.getContent());
+        assertEquals("https://it.wikipedia.org/wiki/Palermo", changes.getWikiUrl());
+        assertNotNull(changes.getUpdatedAt());
+
+        Article stored = articleDAO.findByIdForUser(saved.getId(), "9605").orElseThrow();
+        assertEquals("Palermo felicissima", stored.getTitle());
+        assertEquals(1L, stored.getVersion());
+        assertEquals("Contenuto di Palermo", stored.getContent());
+    }
+}
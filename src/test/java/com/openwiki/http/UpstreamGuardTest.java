@@ -0,0 +1,211 @@
+package com.openwiki.http;
+
+import com.openwiki.support.StubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UpstreamGuardTest {
+    private StubServer stub;
+    private UpstreamClient client;
+    private final AtomicInteger status = new AtomicInteger(200);
+    // Il primo GET su /slow resta fermo: la richiesta di hedging deve rispondere al suo posto
+    private final AtomicBoolean stallNextSlow = new AtomicBoolean();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new StubServer(exchange -> {
+            if (exchange.getRequestURI().getPath().equals("/slow") && stallNextSlow.compareAndSet(true, false)) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new StubServer.Response(status.get(), "{}");
+        });
+        client = new UpstreamClient(Duration.ofSeconds(1), Duration.ofSeconds(5), 32, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    private UpstreamGuard guard(int maxConcurrent, Duration timeout, int failureThreshold, Duration openDuration,
+                                boolean hedging) {
+        return new UpstreamGuard("test", maxConcurrent, 1, timeout, failureThreshold, openDuration,
+            hedging, Duration.ofMillis(20));
+    }
+
+    private HttpRequest request(UpstreamGuard guard, String path) {
+        return client.newRequest(stub.baseUrl() + path, guard.requestTimeout()).GET().build();
+    }
+
+    private HttpResponse<String> send(UpstreamGuard guard, String path) throws Exception {
+        HttpRequest request = request(guard, path);
+        return guard.send(true, () -> client.sendAsync(request));
+    }
+
+    @Test
+    void opensAfterConsecutiveFailuresAndFailsFast() throws Exception {
+        UpstreamGuard guard = guard(8, Duration.ofSeconds(2), 3, Duration.ofMinutes(1), false);
+        status.set(500);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(500, send(guard, "/a").statusCode());
+        }
+
+        long start = System.nanoTime();
+        assertThrows(UpstreamUnavailableException.class, () -> send(guard, "/a"));
+        assertTrue(System.nanoTime() - start < 100_000_000L, "open circuit must not wait for the network");
+        assertEquals(3, stub.requestCount());
+        assertEquals("OPEN", guard.stats().get("state"));
+        assertEquals(1L, guard.stats().get("shortCircuited"));
+    }
+
+    @Test
+    void halfOpenProbeClosesCircuit() throws Exception {
+        UpstreamGuard guard = guard(8, Duration.ofSeconds(2), 2, Duration.ofMillis(200), false);
+        status.set(503);
+        send(guard, "/a");
+        send(guard, "/a");
+        assertThrows(UpstreamUnavailableException.class, () -> send(guard, "/a"));
+
+        status.set(200);
+        Thread.sleep(300);
+        assertEquals(200, send(guard, "/a").statusCode());
+        assertEquals("CLOSED", guard.stats().get("state"));
+        assertEquals(200, send(guard, "/a").statusCode());
+    }
+
+    @Test
+    void failedProbeReopensCircuit() throws Exception {
+        UpstreamGuard guard = guard(8, Duration.ofSeconds(2), 2, Duration.ofMillis(200), false);
+        status.set(500);
+        send(guard, "/a");
+        send(guard, "/a");
+        Thread.sleep(300);
+        assertEquals(500, send(guard, "/a").statusCode());
+        assertThrows(UpstreamUnavailableException.class, () -> send(guard, "/a"));
+        assertEquals(3, stub.requestCount());
+        assertEquals(2L, guard.stats().get("opened"));
+    }
+
+    @Test
+    void bulkheadQueuesThenRejectsBeyondLimits() throws Exception {
+        UpstreamGuard guard = guard(2, Duration.ofSeconds(2), 5, Duration.ofMinutes(1), false);
+        stub.setLatencyMillis(300);
+        HttpRequest request = request(guard, "/a");
+        List<CompletableFuture<HttpResponse<String>>> accepted = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            accepted.add(guard.sendAsync(true, () -> client.sendAsync(request)));
+        }
+        assertEquals(1, guard.stats().get("queued"));
+        CompletableFuture<HttpResponse<String>> rejected = guard.sendAsync(true, () -> client.sendAsync(request));
+
+        ExecutionException error = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(UpstreamUnavailableException.class, error.getCause());
+        for (CompletableFuture<HttpResponse<String>> response : accepted) {
+            assertEquals(200, response.get().statusCode());
+        }
+        assertEquals(3, stub.requestCount());
+        assertEquals(1L, guard.rejected());
+        assertEquals(0, guard.inFlight());
+        // I rifiuti del bulkhead non contano come errori dell'upstream
+        assertEquals("CLOSED", guard.stats().get("state"));
+    }
+
+    @Test
+    void slowResponsesTimeOutAndOpenCircuit() throws Exception {
+        UpstreamGuard guard = guard(8, Duration.ofMillis(150), 2, Duration.ofMinutes(1), false);
+        stub.setLatencyMillis(1000);
+        long start = System.nanoTime();
+        assertThrows(HttpTimeoutException.class, () -> send(guard, "/a"));
+        assertTrue(System.nanoTime() - start < 900_000_000L);
+        assertThrows(HttpTimeoutException.class, () -> send(guard, "/a"));
+        assertThrows(UpstreamUnavailableException.class, () -> send(guard, "/a"));
+        assertEquals(2L, guard.stats().get("timeouts"));
+    }
+
+    @Test
+    void timeSpentInBulkheadQueueCountsTowardsTimeout() throws Exception {
+        UpstreamGuard guard = guard(1, Duration.ofMillis(300), 5, Duration.ofMinutes(1), false);
+        stub.setLatencyMillis(250);
+        HttpRequest request = request(guard, "/a");
+        CompletableFuture<HttpResponse<String>> first = guard.sendAsync(true, () -> client.sendAsync(request));
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> queued = guard.sendAsync(true, () -> client.sendAsync(request));
+
+        ExecutionException error = assertThrows(ExecutionException.class, queued::get);
+        assertInstanceOf(HttpTimeoutException.class, error.getCause());
+        assertTrue(System.nanoTime() - start < 450_000_000L, "the deadline must include the wait for a permit");
+        assertEquals(200, first.get().statusCode());
+        for (int i = 0; i < 20 && guard.stats().get("timeouts").equals(0L); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1L, guard.stats().get("timeouts"));
+    }
+
+    @Test
+    void completedRequestsCancelTheirTimers() throws Exception {
+        UpstreamGuard guard = guard(8, Duration.ofSeconds(30), 5, Duration.ofMinutes(1), true);
+        for (int i = 0; i < 40; i++) {
+            assertEquals(200, send(guard, "/fast").statusCode());
+        }
+        // Né la scadenza a 30 s né gli hedge restano in coda trattenendo le risposte
+        for (int i = 0; i < 50 && UpstreamGuard.pendingTimers() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, UpstreamGuard.pendingTimers());
+    }
+
+    @Test
+    void hedgedRequestAnswersWhenFirstAttemptStalls() throws Exception {
+        UpstreamGuard guard = guard(8, Duration.ofSeconds(5), 5, Duration.ofMinutes(1), true);
+        // Riempie la finestra di latenze per avere un p95
+        for (int i = 0; i < 32; i++) {
+            send(guard, "/fast");
+        }
+
+        stallNextSlow.set(true);
+        long start = System.nanoTime();
+        assertEquals(200, send(guard, "/slow").statusCode());
+        assertTrue(System.nanoTime() - start < 800_000_000L, "the hedge must answer before the stalled attempt");
+        assertEquals(2, stub.requestCount("/slow"));
+        assertEquals(1L, guard.hedges());
+        // Il tentativo bloccato viene annullato e libera subito il suo slot
+        for (int i = 0; i < 20 && guard.inFlight() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, guard.inFlight());
+        assertTrue(System.nanoTime() - start < 900_000_000L);
+        assertEquals(0L, guard.stats().get("failures"));
+    }
+
+    @Test
+    void noHedgeForNonIdempotentRequests() throws Exception {
+        UpstreamGuard guard = guard(8, Duration.ofSeconds(5), 5, Duration.ofMinutes(1), true);
+        for (int i = 0; i < 32; i++) {
+            send(guard, "/fast");
+        }
+
+        stallNextSlow.set(true);
+        HttpRequest request = client.newRequest(stub.baseUrl() + "/slow", guard.requestTimeout())
+            .POST(HttpRequest.BodyPublishers.ofString("{}"))
+            .build();
+        assertEquals(200, guard.send(false, () -> client.sendAsync(request)).statusCode());
+        assertEquals(1, stub.requestCount("/slow"));
+        assertEquals(0L, guard.hedges());
+    }
+}
@@ -0,0 +1,124 @@
+package com.openwiki.loadtest;
+
+import com.openwiki.cache.ArticleCache;
+import com.openwiki.cache.SearchCache;
+import com.openwiki.controller.WikiController;
+import com.openwiki.dao.ArticleDAO;
+import com.openwiki.http.UpstreamClient;
+import com.openwiki.http.UpstreamGuard;
+import com.openwiki.service.WikiService;
+import com.openwiki.support.StubServer;
+import io.javalin.Javalin;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/*
+ * Confronta il percorso bloccante (httpClient.send sul thread di Jetty) con quello asincrono
+ * (ctx.future + sendAsync) a parità di pool di Jetty e di latenza di Wikipedia.
+ *
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.openwiki.loadtest.AsyncUpstreamLoadTest \
+ *     -Dload.concurrency=400 -Dload.latencyMillis=1000 -Dload.jettyThreads=32
+ */
+public class AsyncUpstreamLoadTest {
+    private static final AtomicInteger titleCounter = new AtomicInteger();
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = Integer.getInteger("load.concurrency", 400);
+        int latencyMillis = Integer.getInteger("load.latencyMillis", 1000);
+        int jettyThreads = Integer.getInteger("load.jettyThreads", 32);
+
+        try (StubServer upstream = new StubServer(exchange -> StubServer.Response.ok(
+                "{\"query\":{\"pages\":{\"1\":{\"pageid\":1,\"title\":\"" + StubServer.queryParam(exchange, "titles")
+                + "\",\"extract\":\"Lorem ipsum\",\"fullurl\":\"https://it.wikipedia.org/wiki/X\"}}}}"))) {
+            upstream.setLatencyMillis(latencyMillis);
+
+            // Cache minima: ogni richiesta usa un titolo diverso e deve andare upstream;
+            // nessun limite per host né bulkhead, per misurare solo il pool di Jetty
+            WikiService wikiService = new WikiService(upstream.baseUrl(),
+                new ArticleCache(1024, Duration.ofSeconds(1)), SearchCache.fromConfig(),
+                new UpstreamClient(Duration.ofSeconds(30), Duration.ofSeconds(120), 100_000, 8),
+                new UpstreamGuard("wikipedia", Integer.MAX_VALUE, 0, Duration.ofSeconds(120), Integer.MAX_VALUE, Duration.ZERO,
+                    false, Duration.ZERO));
+            WikiController controller = new WikiController(wikiService, new ArticleDAO());
+
+            Javalin app = Javalin.create(config -> {
+                config.showJavalinBanner = false;
+                config.jetty.server(() -> {
+                    Server server = new Server(new QueuedThreadPool(jettyThreads, jettyThreads));
+                    ServerConnector connector = new ServerConnector(server);
+                    connector.setAcceptQueueSize(4096);
+                    server.addConnector(connector);
+                    return server;
+                });
+            });
+            app.get("/blocking/{title}", ctx -> ctx.json(wikiService.getArticle(ctx.pathParam("title"))));
+            app.get("/async/{title}", controller::getArticle);
+            app.start(0);
+
+            String baseUrl = "http://127.0.0.1:" + app.port();
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(30)).build();
+
+            System.out.printf("Jetty threads: %d, upstream latency: %d ms, concurrent requests: %d%n",
+                jettyThreads, latencyMillis, concurrency);
+            // Warm-up di JIT e connessioni
+            run(client, baseUrl + "/blocking/", jettyThreads);
+            run(client, baseUrl + "/async/", jettyThreads);
+
+            report("blocking", run(client, baseUrl + "/blocking/", concurrency), concurrency, latencyMillis);
+            report("async", run(client, baseUrl + "/async/", concurrency), concurrency, latencyMillis);
+
+            app.stop();
+        }
+        System.exit(0);
+    }
+
+    private static Result run(HttpClient client, String prefix, int concurrency) {
+        long start = System.nanoTime();
+        AtomicInteger errors = new AtomicInteger();
+        List<CompletableFuture<Void>> requests = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(prefix + "Pagina" + titleCounter.incrementAndGet()))
+                .timeout(Duration.ofSeconds(60))
+                .build();
+            requests.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    if (error != null || response.statusCode() != 200) {
+                        errors.incrementAndGet();
+                    }
+                    return null;
+                }));
+        }
+        CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0])).join();
+        return new Result(System.nanoTime() - start, errors.get());
+    }
+
+    private static void report(String name, Result result, int concurrency, int latencyMillis) {
+        double seconds = result.elapsedNanos / 1e9;
+        // Richieste che il server tiene "in volo" contemporaneamente, secondo la legge di Little
+        double inFlight = concurrency * (latencyMillis / 1000.0) / seconds;
+        System.out.printf("%-9s %6d requests in %6.2f s  %8.1f req/s  ~%5.0f in flight  errors: %d%n",
+            name, concurrency, seconds, concurrency / seconds, inFlight, result.errors);
+    }
+
+    private static final class Result {
+        final long elapsedNanos;
+        final int errors;
+
+        Result(long elapsedNanos, int errors) {
+            this.elapsedNanos = elapsedNanos;
+            this.errors = errors;
+        }
+    }
+}
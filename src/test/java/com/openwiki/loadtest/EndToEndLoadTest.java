@@ -0,0 +1,300 @@
+package com.openwiki.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.openwiki.Main;
+import com.openwiki.service.WikiService;
+import com.openwiki.support.EmbeddedDatabase;
+import com.openwiki.support.StubServer;
+import io.javalin.Javalin;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Test di carico end-to-end senza rete: l'applicazione completa di Main.createApp (route, middleware, cache,
+ * metriche) su H2, con Wikipedia e il servizio Flask sostituiti da StubServer che riproducono le risposte
+ * registrate in src/test/resources/fixtures con una latenza configurabile. load.users utenti virtuali ripetono
+ * un mix di chiamate (ricerca, articolo, featured, CRUD degli articoli salvati, utente) per load.durationSeconds,
+ * dopo un warm-up; alla fine richieste al secondo e p50/p99/p999 per route.
+ *
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+ * java -Dlog.level=WARN -Dload.users=64 -Dload.durationSeconds=30 -Dload.wikiLatencyMillis=80 \
+ *     -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) com.openwiki.loadtest.EndToEndLoadTest
+ *
+ * Il mix (pesi relativi) si cambia con -Dload.mix=search:25,article:30,featured:10,...
+ */
+public class EndToEndLoadTest {
+    private static final String DEFAULT_MIX =
+        "search:25,article:30,featured:10,list:10,get:8,create:7,update:4,delete:3,user:3";
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private enum Operation {
+        SEARCH("GET /api/wikipedia/search"),
+        ARTICLE("GET /api/wikipedia/article/{title}"),
+        FEATURED("GET /api/wikipedia/featured"),
+        LIST("GET /api/articles/summaries"),
+        GET("GET /api/articles/{id}"),
+        CREATE("POST /api/articles"),
+        UPDATE("PUT /api/articles/{id}"),
+        DELETE("DELETE /api/articles/{id}"),
+        USER("GET /api/auth/user");
+
+        final String route;
+
+        Operation(String route) {
+            this.route = route;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int users = Integer.getInteger("load.users", 64);
+        int durationSeconds = Integer.getInteger("load.durationSeconds", 30);
+        int warmupSeconds = Integer.getInteger("load.warmupSeconds", 10);
+        int wikiLatencyMillis = Integer.getInteger("load.wikiLatencyMillis", 80);
+        int authLatencyMillis = Integer.getInteger("load.authLatencyMillis", 10);
+        // Titoli distinti chiesti come articoli: con più titoli la cache degli articoli regge meno richieste
+        int titles = Integer.getInteger("load.titles", 2000);
+        Operation[] mix = parseMix(System.getProperty("load.mix", DEFAULT_MIX));
+
+        RecordedUpstreams recorded = new RecordedUpstreams(titles);
+        try (StubServer wikipedia = new StubServer(recorded.wikipedia());
+             StubServer auth = new StubServer(recorded.auth())) {
+            wikipedia.setLatencyMillis(wikiLatencyMillis);
+            auth.setLatencyMillis(authLatencyMillis);
+
+            EmbeddedDatabase.configure();
+            System.setProperty("wiki.api.url", wikipedia.baseUrl());
+            System.setProperty("auth.api.url", auth.baseUrl());
+            WikiService wikiService = new WikiService();
+            Javalin app = Main.createApp(wikiService);
+            app.start(0);
+            wikiService.prefetchFeaturedArticles();
+
+            String baseUrl = "http://127.0.0.1:" + app.port();
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+            System.out.printf("Users: %d, duration: %d s (+%d s warm-up), Wikipedia latency: %d ms, auth latency: %d ms,"
+                + " titles: %d%n", users, durationSeconds, warmupSeconds, wikiLatencyMillis, authLatencyMillis, titles);
+
+            run(client, baseUrl, recorded, mix, users, warmupSeconds);
+            List<VirtualUser> measured = run(client, baseUrl, recorded, mix, users, durationSeconds);
+            report(measured, durationSeconds);
+
+            app.stop();
+        }
+        System.exit(0);
+    }
+
+    // Ogni operazione compare nell'array tante volte quanto il suo peso: l'estrazione è un solo nextInt
+    private static Operation[] parseMix(String mix) {
+        List<Operation> weighted = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            Operation operation = Operation.valueOf(parts[0].trim().toUpperCase());
+            for (int i = Integer.parseInt(parts[1].trim()); i > 0; i--) {
+                weighted.add(operation);
+            }
+        }
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("Empty load.mix");
+        }
+        return weighted.toArray(new Operation[0]);
+    }
+
+    private static List<VirtualUser> run(HttpClient client, String baseUrl, RecordedUpstreams recorded,
+                                         Operation[] mix, int users, int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        List<VirtualUser> virtualUsers = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            // user_id è una colonna INT: ogni utente virtuale ha un id numerico e i propri articoli
+            VirtualUser user = new VirtualUser(client, baseUrl, recorded, mix, String.valueOf(9900 + i), deadline);
+            Thread thread = new Thread(user, "load-user-" + i);
+            virtualUsers.add(user);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return virtualUsers;
+    }
+
+    private static void report(List<VirtualUser> users, int seconds) {
+        System.out.printf("%-36s %9s %9s %9s %9s %9s %9s %7s%n",
+            "route", "requests", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "errors");
+        Samples all = new Samples();
+        int allErrors = 0;
+        for (Operation operation : Operation.values()) {
+            Samples merged = new Samples();
+            int errors = 0;
+            for (VirtualUser user : users) {
+                merged.addAll(user.latencies.get(operation));
+                errors += user.errors.get(operation)[0];
+            }
+            if (merged.size == 0 && errors == 0) {
+                continue;
+            }
+            all.addAll(merged);
+            allErrors += errors;
+            print(operation.route, merged, errors, seconds);
+        }
+        print("total", all, allErrors, seconds);
+    }
+
+    private static void print(String route, Samples samples, int errors, int seconds) {
+        long[] sorted = samples.sorted();
+        System.out.printf("%-36s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %7d%n", route, sorted.length,
+            sorted.length / (double) seconds, percentile(sorted, 0.50), percentile(sorted, 0.99),
+            percentile(sorted, 0.999), sorted.length > 0 ? sorted[sorted.length - 1] / 1000.0 : 0, errors);
+    }
+
+    // Percentile per rango sui campioni ordinati (microsecondi), in millisecondi
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1000.0;
+    }
+
+    // Latenze di un utente virtuale: nessuna struttura condivisa tra i thread durante la misura
+    private static final class Samples {
+        long[] values = new long[1024];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        long[] sorted() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    private static final class VirtualUser implements Runnable {
+        private final HttpClient client;
+        private final String baseUrl;
+        private final RecordedUpstreams recorded;
+        private final Operation[] mix;
+        private final String userId;
+        private final long deadline;
+        private final List<String> saved = new ArrayList<>();
+        final Map<Operation, Samples> latencies = new EnumMap<>(Operation.class);
+        final Map<Operation, int[]> errors = new EnumMap<>(Operation.class);
+
+        VirtualUser(HttpClient client, String baseUrl, RecordedUpstreams recorded, Operation[] mix, String userId,
+                    long deadline) {
+            this.client = client;
+            this.baseUrl = baseUrl;
+            this.recorded = recorded;
+            this.mix = mix;
+            this.userId = userId;
+            this.deadline = deadline;
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, new Samples());
+                errors.put(operation, new int[1]);
+            }
+        }
+
+        @Override
+        public void run() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                Operation operation = mix[random.nextInt(mix.length)];
+                // Senza articoli salvati le operazioni su un id diventano un inserimento
+                if (saved.isEmpty() && (operation == Operation.GET || operation == Operation.UPDATE
+                    || operation == Operation.DELETE)) {
+                    operation = Operation.CREATE;
+                }
+                HttpRequest request = request(operation, random);
+                long start = System.nanoTime();
+                try {
+                    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                    long micros = (System.nanoTime() - start) / 1000;
+                    if (response.statusCode() / 100 != 2) {
+                        errors.get(operation)[0]++;
+                        continue;
+                    }
+                    latencies.get(operation).add(micros);
+                    afterResponse(operation, response.body());
+                } catch (Exception e) {
+                    errors.get(operation)[0]++;
+                }
+            }
+        }
+
+        private HttpRequest request(Operation operation, ThreadLocalRandom random) {
+            switch (operation) {
+                case SEARCH:
+                    return get("/api/wikipedia/search?query=roma+" + random.nextInt(50));
+                case ARTICLE:
+                    return get("/api/wikipedia/article/" + recorded.randomTitle().replace(" ", "%20"));
+                case FEATURED:
+                    return get("/api/wikipedia/featured");
+                case LIST:
+                    return get("/api/articles/summaries?limit=20");
+                case GET:
+                    return get("/api/articles/" + savedId(random));
+                case CREATE:
+                    String title = recorded.randomTitle();
+                    ObjectNode article = objectMapper.createObjectNode()
+                        .put("title", title)
+                        .put("content", recorded.articleContent())
+                        .put("pageId", String.valueOf(title.hashCode() & 0xFFFFF))
+                        .put("wikiUrl", "https://it.wikipedia.org/wiki/" + title.replace(' ', '_'));
+                    return builder("/api/articles").POST(HttpRequest.BodyPublishers.ofString(article.toString())).build();
+                case UPDATE:
+                    String body = objectMapper.createObjectNode().put("title", "Rinominato " + random.nextInt(1000)).toString();
+                    return builder("/api/articles/" + savedId(random))
+                        .PUT(HttpRequest.BodyPublishers.ofString(body)).build();
+                case DELETE:
+                    return builder("/api/articles/" + saved.get(saved.size() - 1)).DELETE().build();
+                default:
+                    return builder("/api/auth/user").header("Authorization", "Bearer load-test-token").GET().build();
+            }
+        }
+
+        private void afterResponse(Operation operation, String body) throws Exception {
+            if (operation == Operation.CREATE) {
+                saved.add(objectMapper.readTree(body).path("id").asText());
+            } else if (operation == Operation.DELETE) {
+                saved.remove(saved.size() - 1);
+            }
+        }
+
+        private String savedId(ThreadLocalRandom random) {
+            return saved.get(random.nextInt(saved.size()));
+        }
+
+        private HttpRequest get(String path) {
+            return builder(path).GET().build();
+        }
+
+        private HttpRequest.Builder builder(String path) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .header("X-User-ID", userId);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.openwiki.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.openwiki.support.StubServer;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+// Risposte registrate di Wikipedia e del servizio Flask (src/test/resources/fixtures), riprodotte dagli StubServer
+// del test di carico. La pagina di article-roma.json fa da modello per ogni titolo richiesto
+class RecordedUpstreams {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ObjectNode articlePage;
+    private final String searchBody;
+    private final String loginBody;
+    private final String userBody;
+    private final int titles;
+    // Le risposte per un solo titolo si costruiscono una volta: lo stub non deve pesare sul carico misurato
+    private final Map<String, String> singlePages = new ConcurrentHashMap<>();
+
+    RecordedUpstreams(int titles) throws IOException {
+        this.articlePage = (ObjectNode) objectMapper.readTree(fixture("article-roma.json"))
+            .path("query").path("pages").elements().next();
+        this.searchBody = fixture("search-roma.json");
+        this.loginBody = fixture("auth-login.json");
+        this.userBody = fixture("auth-user.json");
+        this.titles = titles;
+    }
+
+    private static String fixture(String name) throws IOException {
+        try (InputStream in = RecordedUpstreams.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IOException("Missing fixture " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    // Titoli che il carico chiede come articoli e che list=random restituisce
+    String title(int index) {
+        return "Pagina " + index;
+    }
+
+    // Testo dell'articolo registrato, usato come contenuto degli articoli salvati dal carico
+    String articleContent() {
+        return articlePage.path("extract").asText();
+    }
+
+    String randomTitle() {
+        return title(ThreadLocalRandom.current().nextInt(titles));
+    }
+
+    Function<HttpExchange, StubServer.Response> wikipedia() {
+        return exchange -> {
+            if ("search".equals(StubServer.queryParam(exchange, "list"))) {
+                return StubServer.Response.ok(searchBody);
+            }
+            if ("random".equals(StubServer.queryParam(exchange, "list"))) {
+                return StubServer.Response.ok(random(Integer.parseInt(StubServer.queryParam(exchange, "rnlimit"))));
+            }
+            String requested = requestedTitles(exchange);
+            boolean withContent = !"info".equals(StubServer.queryParam(exchange, "prop"));
+            if (requested.indexOf('|') < 0) {
+                return StubServer.Response.ok(singlePages.computeIfAbsent(withContent + requested,
+                    key -> pages(new String[] {requested}, withContent)));
+            }
+            return StubServer.Response.ok(pages(requested.split("\\|"), withContent));
+        };
+    }
+
+    private static String requestedTitles(HttpExchange exchange) {
+        String titles = StubServer.queryParam(exchange, "titles");
+        return titles != null ? titles : "";
+    }
+
+    Function<HttpExchange, StubServer.Response> auth() {
+        return exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (path.endsWith("/auth/login")) {
+                return StubServer.Response.ok(loginBody);
+            }
+            if (path.endsWith("/auth/user")) {
+                return StubServer.Response.ok(userBody);
+            }
+            return StubServer.Response.ok("{\"valid\": true}");
+        };
+    }
+
+    private String random(int count) {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("batchcomplete", "");
+        ArrayNode random = root.putObject("query").putArray("random");
+        for (int i = 0; i < count; i++) {
+            random.addObject().put("id", 100_000 + i).put("ns", 0).put("title", randomTitle());
+        }
+        return root.toString();
+    }
+
+    // Le pagine mantengono i campi della risposta registrata; con prop=info senza l'estratto
+    private String pages(String[] requested, boolean withContent) {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("batchcomplete", "");
+        ObjectNode pages = root.putObject("query").putObject("pages");
+        for (String title : requested) {
+            ObjectNode page = articlePage.deepCopy();
+            int pageId = 1_000_000 + (title.hashCode() & 0xFFFFF);
+            page.put("pageid", pageId);
+            page.put("title", title);
+            page.put("fullurl", "https://it.wikipedia.org/wiki/" + title.replace(' ', '_'));
+            if (!withContent) {
+                page.remove("extract");
+                page.remove("thumbnail");
+            }
+            pages.set(String.valueOf(pageId), page);
+        }
+        return root.toString();
+    }
+}
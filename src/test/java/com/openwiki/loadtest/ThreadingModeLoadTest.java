@@ -0,0 +1,188 @@
+package com.openwiki.loadtest;
+
+import com.openwiki.cache.ArticleCache;
+import com.openwiki.cache.SearchCache;
+import com.openwiki.config.ServerConfig;
+import com.openwiki.controller.WikiController;
+import com.openwiki.dao.ArticleDAO;
+import com.openwiki.http.UpstreamClient;
+import com.openwiki.http.UpstreamGuard;
+import com.openwiki.model.Article;
+import com.openwiki.service.WikiService;
+import com.openwiki.support.EmbeddedDatabase;
+import com.openwiki.support.StubServer;
+import io.javalin.Javalin;
+import io.javalin.util.ConcurrencyUtil;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+
+/*
+ * Confronta thread di piattaforma e virtual thread sugli endpoint article, search e saved-articles.
+ * Richiede JDK 21 per la modalità virtual:
+ *
+ * JAVA_HOME=/path/to/jdk21 mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.openwiki.loadtest.ThreadingModeLoadTest \
+ *     -Dload.concurrency=2000 -Dload.latencyMillis=500
+ */
+public class ThreadingModeLoadTest {
+    private static final AtomicInteger counter = new AtomicInteger();
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private enum Mode {
+        PLATFORM_BLOCKING(false, true),
+        PLATFORM_ASYNC(false, false),
+        VIRTUAL_BLOCKING(true, false);
+
+        final boolean virtualThreads;
+        final boolean forceBlockingHandlers;
+
+        Mode(boolean virtualThreads, boolean forceBlockingHandlers) {
+            this.virtualThreads = virtualThreads;
+            this.forceBlockingHandlers = forceBlockingHandlers;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = Integer.getInteger("load.concurrency", 2000);
+        int latencyMillis = Integer.getInteger("load.latencyMillis", 500);
+
+        EmbeddedDatabase.configure();
+        ArticleDAO articleDAO = new ArticleDAO();
+        for (int i = 0; i < 20; i++) {
+            Article article = new Article();
+            article.setUserId("4");
+            article.setTitle("Articolo " + i);
+            article.setContent("Contenuto " + i);
+            article.setDateDownloaded(LocalDateTime.now());
+            articleDAO.save(article);
+        }
+
+        try (StubServer upstream = new StubServer(exchange -> {
+            if ("search".equals(StubServer.queryParam(exchange, "list"))) {
+                return StubServer.Response.ok("{\"query\":{\"search\":[{\"title\":\"Roma\",\"pageid\":1,\"snippet\":\"...\"}]}}");
+            }
+            return StubServer.Response.ok("{\"query\":{\"pages\":{\"1\":{\"pageid\":1,\"title\":\""
+                + StubServer.queryParam(exchange, "titles") + "\",\"extract\":\"Lorem ipsum\"}}}}");
+        })) {
+            upstream.setLatencyMillis(latencyMillis);
+            System.out.printf("JDK %s, virtual threads available: %s, upstream latency: %d ms, concurrent requests: %d%n",
+                Runtime.version(), ConcurrencyUtil.isLoomAvailable(), latencyMillis, concurrency);
+
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(60)).build();
+            for (Mode mode : Mode.values()) {
+                if (mode.virtualThreads && !ConcurrencyUtil.isLoomAvailable()) {
+                    System.out.printf("%-18s skipped (requires JDK 21)%n", mode);
+                    continue;
+                }
+                runMode(mode, upstream, articleDAO, client, concurrency);
+            }
+        }
+        System.exit(0);
+    }
+
+    private static void runMode(Mode mode, StubServer upstream, ArticleDAO articleDAO,
+                                HttpClient client, int concurrency) {
+        ServerConfig.setVirtualThreads(mode.virtualThreads);
+        ServerConfig.applyThreadingMode();
+
+        // Cache minime: ogni richiesta usa un titolo/query diverso e va upstream, senza bulkhead né breaker
+        WikiService wikiService = new WikiService(upstream.baseUrl(),
+            new ArticleCache(1024, Duration.ofSeconds(1)),
+            new SearchCache(1, Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ZERO, false),
+            new UpstreamClient(Duration.ofSeconds(30), Duration.ofSeconds(120), 100_000, 8),
+            new UpstreamGuard("wikipedia", Integer.MAX_VALUE, 0, Duration.ofSeconds(120), Integer.MAX_VALUE, Duration.ZERO,
+                false, Duration.ZERO));
+        WikiController controller = new WikiController(wikiService, articleDAO);
+
+        Javalin app = Javalin.create(config -> {
+            config.showJavalinBanner = false;
+            config.jetty.server(() -> {
+                // Stesso pool di default di Javalin (8-250 thread, oppure virtual thread)
+                Server server = new Server(ConcurrencyUtil.jettyThreadPool("JettyServerThreadPool", 8, 250));
+                ServerConnector connector = new ServerConnector(server);
+                connector.setAcceptQueueSize(8192);
+                server.addConnector(connector);
+                return server;
+            });
+        });
+        if (mode.forceBlockingHandlers) {
+            app.get("/api/wikipedia/article/{title}", ctx -> ctx.json(wikiService.getArticle(ctx.pathParam("title"))));
+            app.get("/api/wikipedia/search", ctx -> ctx.json(wikiService.search(ctx.queryParam("query"), 10)));
+        } else {
+            app.get("/api/wikipedia/article/{title}", controller::getArticle);
+            app.get("/api/wikipedia/search", controller::search);
+        }
+        app.get("/api/articles", controller::getUserArticles);
+        app.start(0);
+
+        String baseUrl = "http://127.0.0.1:" + app.port();
+        run(client, i -> baseUrl + "/api/articles", 200);
+
+        threads.resetPeakThreadCount();
+        report(mode, "article", run(client, i -> baseUrl + "/api/wikipedia/article/Pagina" + i, concurrency));
+        report(mode, "search", run(client, i -> baseUrl + "/api/wikipedia/search?query=q" + i, concurrency));
+        report(mode, "saved-articles", run(client, i -> baseUrl + "/api/articles", concurrency));
+        System.out.printf("%-18s peak platform threads: %d%n", mode, threads.getPeakThreadCount());
+
+        app.stop();
+    }
+
+    private static Result run(HttpClient client, java.util.function.IntFunction<String> url, int concurrency) {
+        long start = System.nanoTime();
+        long[] latencies = new long[concurrency];
+        AtomicInteger errors = new AtomicInteger();
+        List<CompletableFuture<Void>> requests = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            int slot = i;
+            long sent = System.nanoTime();
+            HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url.apply(counter.incrementAndGet())))
+                .timeout(Duration.ofSeconds(120))
+                .build();
+            requests.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    latencies[slot] = System.nanoTime() - sent;
+                    if (error != null || response.statusCode() != 200) {
+                        errors.incrementAndGet();
+                    }
+                    return null;
+                }));
+        }
+        CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0])).join();
+        return new Result(System.nanoTime() - start, latencies, errors.get());
+    }
+
+    private static void report(Mode mode, String endpoint, Result result) {
+        long[] sorted = result.latencies.clone();
+        Arrays.sort(sorted);
+        double seconds = result.elapsedNanos / 1e9;
+        System.out.printf("%-18s %-15s %8.1f req/s  p50 %6d ms  p99 %6d ms  errors: %d%n",
+            mode, endpoint, sorted.length / seconds,
+            sorted[sorted.length / 2] / 1_000_000, sorted[(int) (sorted.length * 0.99)] / 1_000_000, result.errors);
+    }
+
+    private static final class Result {
+        final long elapsedNanos;
+        final long[] latencies;
+        final int errors;
+
+        Result(long elapsedNanos, long[] latencies, int errors) {
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies;
+            this.errors = errors;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.openwiki.metrics;
+
+import com.openwiki.cache.ArticleCache;
+import com.openwiki.cache.SearchCache;
+import com.openwiki.controller.WikiController;
+import com.openwiki.dao.ArticleDAO;
+import com.openwiki.service.WikiService;
+import com.openwiki.support.EmbeddedDatabase;
+import com.openwiki.support.StubServer;
+import io.javalin.Javalin;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+    private static final HttpClient client = HttpClient.newHttpClient();
+    private static StubServer upstream;
+    private static Javalin app;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        EmbeddedDatabase.configure();
+        upstream = new StubServer(exchange -> StubServer.Response.ok("{\"query\":{\"pages\":{\"7\":{\"pageid\":7,"
+            + "\"title\":\"" + StubServer.queryParam(exchange, "titles") + "\",\"extract\":\"Testo\"}}}}"));
+        WikiController controller = new WikiController(new WikiService(upstream.baseUrl(),
+            new ArticleCache(1024 * 1024, Duration.ofMinutes(5)), SearchCache.fromConfig()), new ArticleDAO());
+        app = Javalin.create();
+        Metrics.instrument(app);
+        app.before("/api/articles*", ctx -> ctx.attribute("userId", "9801"));
+        app.get("/api/articles", controller::getUserArticles);
+        app.get("/api/wikipedia/article/{title}", controller::getArticle);
+        app.get("/metrics", ctx -> ctx.contentType(Metrics.contentType()).result(Metrics.scrape()));
+        app.start(0);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        app.stop();
+        upstream.close();
+    }
+
+    private static HttpResponse<String> get(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + app.port() + path)).build(),
+            HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void scrape_reportsRoutesUpstreamAndDaoTimings() throws Exception {
+        assertEquals(200, get("/api/wikipedia/article/Genova").statusCode());
+        assertEquals(200, get("/api/wikipedia/article/Bari").statusCode());
+        assertEquals(200, get("/api/articles").statusCode());
+        assertEquals(404, get("/non/esiste").statusCode());
+
+        HttpResponse<String> response = get("/metrics");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Type").orElseThrow().startsWith("text/plain"));
+        String body = response.body();
+
+        // Le due richieste finiscono nella stessa serie: il tag è la route dichiarata, non il path
+        assertTrue(body.contains("http_server_requests_seconds_count{application=\"openwiki-middleware\","
+            + "method=\"GET\",route=\"/api/wikipedia/article/{title}\",status=\"200\",} 2.0"), body);
+        assertTrue(body.contains("route=\"unmatched\",status=\"404\""), body);
+        assertTrue(body.contains("quantile=\"0.99\""), body);
+        assertTrue(body.contains("upstream_requests_seconds_count{application=\"openwiki-middleware\","
+            + "method=\"article\",outcome=\"success\",service=\"wikipedia\",}"), body);
+        assertTrue(body.contains("dao_queries_seconds_count{application=\"openwiki-middleware\",method=\"findByUserId\",}"), body);
+        assertTrue(body.contains("http_server_requests_active"), body);
+        assertTrue(body.contains("featured_pool_depth{application=\"openwiki-middleware\",}"), body);
+        assertTrue(body.contains("featured_pool_refill_last_millis{application=\"openwiki-middleware\",}"), body);
+        assertTrue(body.contains("featured_pool_refill_failures_total{application=\"openwiki-middleware\",}"), body);
+    }
+}
@@ -0,0 +1,66 @@
+package com.openwiki.middleware;
+
+import io.javalin.Javalin;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthMiddlewareTest {
+    private static final HttpClient client = HttpClient.newHttpClient();
+    private Javalin app;
+
+    private void start(String secret) {
+        AuthMiddleware middleware = new AuthMiddleware(
+            new SessionDecoder(secret, null, 100, Duration.ofMinutes(5)), "4");
+        app = Javalin.create();
+        app.before("/api/articles", middleware);
+        app.get("/api/articles", ctx -> ctx.result(String.valueOf(ctx.<Object>attribute("userId"))));
+        app.start(0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        app.stop();
+    }
+
+    private HttpResponse<String> get(String cookie, String userHeader) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + app.port() + "/api/articles"));
+        if (cookie != null) {
+            request.header("Cookie", "session=" + cookie);
+        }
+        if (userHeader != null) {
+            request.header("X-User-ID", userHeader);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void withSecret_onlyValidlySignedSessionsAreAccepted() throws Exception {
+        start(SessionDecoderTest.SECRET);
+        String cookie = SessionDecoderTest.PLAIN_COOKIE;
+        String tampered = cookie.substring(0, cookie.length() - 2) + "xx";
+
+        assertEquals("42", get(cookie, null).body());
+
+        HttpResponse<String> forged = get(tampered, "1");
+        assertEquals(401, forged.statusCode());
+        assertTrue(forged.body().contains("AUTH_REQUIRED"));
+        // Né X-User-ID né l'utente di default sostituiscono la sessione
+        assertEquals(401, get(null, "1").statusCode());
+        assertEquals(401, get(null, null).statusCode());
+    }
+
+    @Test
+    void withoutSecret_fallsBackToHeaderThenDefaultUser() throws Exception {
+        start(null);
+
+        assertEquals("42", get(SessionDecoderTest.PLAIN_COOKIE, "1").body());
+        assertEquals("1", get(null, "1").body());
+        assertEquals("4", get(null, null).body());
+    }
+}
@@ -0,0 +1,65 @@
+package com.openwiki.middleware;
+
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionDecoderTest {
+    // Cookie firmati con itsdangerous (secret "dev-secret-key", salt "cookie-session", timestamp 1700000000)
+    static final String SECRET = "dev-secret-key";
+    static final String PLAIN_COOKIE =
+        "eyJ1c2VyX2lkIjo0MiwiX3Blcm1hbmVudCI6dHJ1ZX0.ZVPxAA.lzpTQ9sW7MG-J2vv-OKTPwS1PeE";
+    static final String COMPRESSED_COOKIE =
+        ".eJytjEEKgCAURO8ya_eBV4mQT44kpcJXV9Hd-3SGZjXvDcyN2akhR3gscB9VKTQsormZ2rumMNrJalJ-jv2HpOwH_NBJB20XO_wKpUSq7T-X7XkBsS9TyQ"
+        + ".ZVPxAA.F2rDGGQOPeAk7yCAR6HaWsiIqsI";
+
+    private static SessionDecoder decoder(String secret, Duration maxAge) {
+        return new SessionDecoder(secret, maxAge, 100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void userId_withValidSignature_returnsUserId() {
+        SessionDecoder decoder = decoder(SECRET, null);
+
+        assertEquals("42", decoder.userId(PLAIN_COOKIE));
+        assertEquals("7", decoder.userId(COMPRESSED_COOKIE));
+    }
+
+    @Test
+    void userId_withTamperedOrForeignCookie_returnsNull() {
+        String tampered = PLAIN_COOKIE.substring(0, PLAIN_COOKIE.length() - 2) + "xx";
+        String forgedPayload = "eyJ1c2VyX2lkIjoxfQ" + PLAIN_COOKIE.substring(PLAIN_COOKIE.indexOf('.'));
+
+        assertNull(decoder(SECRET, null).userId(tampered));
+        assertNull(decoder(SECRET, null).userId(forgedPayload));
+        assertNull(decoder("another-secret", null).userId(PLAIN_COOKIE));
+        assertNull(decoder(SECRET, null).userId("not-a-session"));
+    }
+
+    @Test
+    void userId_expiredSession_returnsNull() {
+        assertNull(decoder(SECRET, Duration.ofDays(31)).userId(PLAIN_COOKIE));
+        assertEquals("42", decoder(SECRET, Duration.ofDays(365 * 100)).userId(PLAIN_COOKIE));
+    }
+
+    @Test
+    void userId_withoutSecret_decodesWithoutVerification() {
+        SessionDecoder decoder = decoder(null, null);
+
+        assertEquals("42", decoder.userId(PLAIN_COOKIE));
+        assertEquals("7", decoder.userId(COMPRESSED_COOKIE));
+        assertEquals("1", decoder.userId("eyJ1c2VyX2lkIjoxfQ.ZVPxAA.firma"));
+    }
+
+    @Test
+    void userId_repeatedCookie_isServedFromCache() {
+        SessionDecoder decoder = decoder(SECRET, null);
+
+        decoder.userId(PLAIN_COOKIE);
+        decoder.userId(PLAIN_COOKIE);
+        decoder.userId(PLAIN_COOKIE);
+
+        assertEquals(2L, decoder.stats().get("hits"));
+        assertEquals(1L, decoder.stats().get("entries"));
+    }
+}
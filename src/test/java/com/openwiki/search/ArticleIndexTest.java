@@ -0,0 +1,112 @@
+package com.openwiki.search;
+
+import com.openwiki.model.Article;
+import com.openwiki.model.SearchHit;
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArticleIndexTest {
+    private final List<Article> stored = new ArrayList<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final ArticleIndex index = new ArticleIndex(userId -> {
+        loads.incrementAndGet();
+        return stored.stream().filter(a -> a.getUserId().equals(userId));
+    }, 1_000_000, Duration.ofMinutes(5));
+
+    private Article article(String id, String userId, String title, String content) {
+        Article article = new Article();
+        article.setId(id);
+        article.setUserId(userId);
+        article.setTitle(title);
+        article.setContent(content);
+        return article;
+    }
+
+    private List<String> ids(List<SearchHit> hits) {
+        List<String> ids = new ArrayList<>();
+        hits.forEach(hit -> ids.add(hit.getId()));
+        return ids;
+    }
+
+    @Test
+    void search_ranksTitleAndFrequentMatchesFirst() {
+        stored.add(article("1", "4", "Milano", "Milano è una città della Lombardia, vicina a Roma."));
+        stored.add(article("2", "4", "Roma", "Roma è la capitale d'Italia. Roma antica fu capitale dell'impero."));
+        stored.add(article("3", "4", "Colosseo", "Il Colosseo si trova a Roma."));
+        stored.add(article("4", "5", "Roma", "Articolo di un altro utente."));
+
+        List<SearchHit> hits = index.search("4", "roma", 10);
+
+        assertEquals("2", hits.get(0).getId());
+        assertEquals(3, hits.size());
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+        assertEquals(List.of("2"), ids(index.search("4", "capitali antiche", 10)));
+        assertTrue(index.search("4", "il di la", 10).isEmpty());
+    }
+
+    @Test
+    void search_snippetStartsNearFirstMatch() {
+        String content = "Introduzione generica sulla regione e sui suoi paesaggi collinari e montani. ".repeat(5)
+            + "Il Duomo di Milano è la cattedrale della città. " + "Altro testo di chiusura. ".repeat(20);
+        stored.add(article("1", "4", "Milano", content));
+
+        String snippet = index.search("4", "cattedrale", 1).get(0).getSnippet();
+
+        assertTrue(snippet.startsWith("…"));
+        assertTrue(snippet.endsWith("…"));
+        assertTrue(snippet.contains("la cattedrale della città"));
+        assertTrue(snippet.length() <= 202);
+    }
+
+    @Test
+    void putAndRemove_updateLoadedIndexWithoutReloading() {
+        stored.add(article("1", "4", "Roma", "Capitale d'Italia."));
+        assertEquals(List.of("1"), ids(index.search("4", "capitale", 10)));
+
+        index.put(article("2", "4", "Parigi", "Capitale della Francia."));
+        index.put(article("1", "4", "Roma", "Città eterna."));
+        assertEquals(List.of("2"), ids(index.search("4", "capitale", 10)));
+
+        index.remove("4", "2");
+        assertTrue(index.search("4", "capitale", 10).isEmpty());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void put_onUnloadedUser_isPickedUpByLazyBuild() {
+        Article article = article("1", "4", "Venezia", "Città sulla laguna.");
+        stored.add(article);
+        index.put(article);
+        assertEquals(0, loads.get());
+
+        assertEquals(List.of("1"), ids(index.search("4", "laguna", 10)));
+        index.invalidate("4");
+        stored.add(article("2", "4", "Chioggia", "Anche lei sulla laguna."));
+        assertEquals(2, index.search("4", "laguna", 10).size());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void put_growingIndexIsReweighedAndEvicted() {
+        // Limite di 1000 caratteri: l'indice parte piccolo e supera il limite solo con le scritture successive
+        ArticleIndex small = new ArticleIndex(userId -> stored.stream().filter(a -> a.getUserId().equals(userId)),
+            1_000, Duration.ofMinutes(5));
+        stored.add(article("1", "4", "Roma", "Roma è la capitale d'Italia."));
+        assertEquals(1, small.search("4", "roma", 10).size());
+
+        small.put(article("2", "4", "Milano", "Milano è una città della Lombardia. ".repeat(40)));
+        small.put(article("3", "4", "Napoli", "Napoli è una città della Campania. ".repeat(40)));
+
+        // L'evizione di Caffeine è asincrona
+        long deadline = System.nanoTime() + 2_000_000_000L;
+        while (!small.stats().get("users").equals(0L) && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(0L, small.stats().get("users"));
+        assertEquals(1L, small.stats().get("evictions"));
+    }
+}
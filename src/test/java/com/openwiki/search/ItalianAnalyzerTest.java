@@ -0,0 +1,36 @@
+package com.openwiki.search;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ItalianAnalyzerTest {
+    private static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        ItalianAnalyzer.analyze(text, (term, offset) -> terms.add(term));
+        return terms;
+    }
+
+    @Test
+    void analyze_dropsStopwordsAndSplitsElisions() {
+        assertEquals(List.of("stor", "imper", "roman"), terms("La storia dell'Impero romano"));
+        assertEquals(List.of("acqua"), terms("l'acqua"));
+    }
+
+    @Test
+    void analyze_foldsAccentsAndInflections() {
+        assertEquals(terms("citta"), terms("Città"));
+        assertEquals(terms("romani"), terms("romana"));
+        assertEquals(terms("antiche"), terms("antichi"));
+        assertEquals(terms("capitale"), terms("capitali"));
+    }
+
+    @Test
+    void analyze_reportsOffsetsInOriginalText() {
+        List<Integer> offsets = new ArrayList<>();
+        ItalianAnalyzer.analyze("Il Colosseo è a Roma", (term, offset) -> offsets.add(offset));
+
+        assertEquals(List.of(3, 16), offsets);
+    }
+}
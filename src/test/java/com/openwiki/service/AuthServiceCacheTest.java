@@ -0,0 +1,112 @@
+package com.openwiki.service;
+
+import com.openwiki.cache.TokenValidationCache;
+import com.openwiki.http.UpstreamClient;
+import com.openwiki.support.StubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthServiceCacheTest {
+    private StubServer stub;
+    private final AtomicInteger serverErrors = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Simula il servizio Flask: valido solo "good", come bearer token o come cookie di sessione
+        stub = new StubServer(exchange -> {
+            if (serverErrors.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                return new StubServer.Response(503, "");
+            }
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            String cookie = exchange.getRequestHeaders().getFirst("Cookie");
+            boolean valid = "Bearer good".equals(authorization) || "session=good".equals(cookie);
+            return valid ? StubServer.Response.ok("{\"valid\":true}") : new StubServer.Response(401, "");
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    private AuthService newService(Duration positiveTtl, Duration negativeTtl) {
+        return new AuthService(stub.baseUrl(), UpstreamClient.shared(),
+            new TokenValidationCache(1000, positiveTtl, negativeTtl));
+    }
+
+    @Test
+    void validateToken_repeatedCalls_hitCache() throws Exception {
+        AuthService authService = newService(Duration.ofMinutes(5), Duration.ofMinutes(5));
+
+        assertTrue(authService.validateToken("good"));
+        assertTrue(authService.validateToken("good"));
+        assertFalse(authService.validateToken("bad"));
+        assertFalse(authService.validateToken("bad"));
+        assertTrue(authService.validateFlaskSession("good"));
+
+        // Bearer e sessione con lo stesso valore sono chiavi distinte
+        assertEquals(3, stub.requestCount());
+    }
+
+    @Test
+    void validateToken_negativeResultsExpireSooner() throws Exception {
+        AuthService authService = newService(Duration.ofMinutes(5), Duration.ofMillis(200));
+
+        assertTrue(authService.validateToken("good"));
+        assertFalse(authService.validateToken("bad"));
+        Thread.sleep(400);
+        assertTrue(authService.validateToken("good"));
+        assertFalse(authService.validateToken("bad"));
+
+        assertEquals(3, stub.requestCount());
+    }
+
+    @Test
+    void validateToken_concurrentCalls_areCoalesced() throws Exception {
+        AuthService authService = newService(Duration.ofMinutes(5), Duration.ofMinutes(5));
+        stub.setLatencyMillis(300);
+
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(authService.validateTokenAsync("good"));
+        }
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.get());
+        }
+
+        assertEquals(1, stub.requestCount());
+    }
+
+    @Test
+    void invalidate_forcesRevalidation() throws Exception {
+        AuthService authService = newService(Duration.ofMinutes(5), Duration.ofMinutes(5));
+
+        assertTrue(authService.validateToken("good"));
+        assertTrue(authService.validateFlaskSession("good"));
+        authService.invalidateToken("good");
+        authService.invalidateFlaskSession("good");
+        assertTrue(authService.validateToken("good"));
+        assertTrue(authService.validateFlaskSession("good"));
+
+        assertEquals(4, stub.requestCount());
+    }
+
+    @Test
+    void validateToken_serverErrorIsNotCached() throws Exception {
+        AuthService authService = newService(Duration.ofMinutes(5), Duration.ofMinutes(5));
+        serverErrors.set(1);
+
+        assertFalse(authService.validateToken("good"));
+        assertTrue(authService.validateToken("good"));
+
+        assertEquals(2, stub.requestCount());
+        assertEquals(1L, authService.getValidationCacheStats().get("loadFailures"));
+    }
+}
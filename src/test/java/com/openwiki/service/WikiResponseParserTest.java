@@ -0,0 +1,89 @@
+package com.openwiki.service;
+
+import com.openwiki.model.Article;
+import com.openwiki.model.WikiSearchResult;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WikiResponseParserTest {
+    private final WikiResponseParser parser = new WikiResponseParser();
+
+    static InputStream fixture(String name) {
+        return WikiResponseParserTest.class.getResourceAsStream("/fixtures/" + name);
+    }
+
+    private static InputStream json(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void parseArticle_readsFieldsAndSkipsUnusedOnes() throws Exception {
+        Article article = parser.parseArticle(fixture("article-roma.json"));
+
+        assertEquals("Roma", article.getTitle());
+        assertEquals("7571", article.getPageId());
+        assertEquals("https://it.wikipedia.org/wiki/Roma", article.getWikiUrl());
+        assertTrue(article.getImageUrl().startsWith("https://upload.wikimedia.org/"));
+        assertEquals(20000, article.getContent().length());
+        assertTrue(article.getContent().contains("«Città eterna»"));
+        assertEquals(141234567L, article.getRevision());
+        assertEquals(Instant.parse("2024-11-02T10:14:03Z"), article.getTouched());
+    }
+
+    @Test
+    void parseArticle_missingPage_usesPlaceholder() throws Exception {
+        Article article = parser.parseArticle(json(
+            "{\"query\":{\"pages\":{\"-1\":{\"ns\":0,\"title\":\"Inesistente\",\"missing\":\"\"}}}}"));
+
+        assertEquals("Inesistente", article.getTitle());
+        assertEquals("Contenuto non disponibile", article.getContent());
+        assertNull(article.getImageUrl());
+        assertEquals("", article.getPageId());
+    }
+
+    @Test
+    void parseSearchResults_readsAllResults() throws Exception {
+        List<WikiSearchResult> results = parser.parseSearchResults(fixture("search-roma.json"));
+
+        assertEquals(20, results.size());
+        WikiSearchResult first = results.get(0);
+        assertEquals("100000", first.getPageId());
+        assertTrue(first.getUrl().startsWith("https://it.wikipedia.org/wiki/Roma+"));
+        assertFalse(first.getExcerpt().isEmpty());
+    }
+
+    @Test
+    void parseArticlePages_marksPagesWithoutExtract() throws Exception {
+        WikiResponseParser.ArticlePages pages = parser.parseArticlePages(json("{\"query\":{"
+            + "\"pages\":{\"1\":{\"pageid\":1,\"title\":\"Roma\",\"extract\":\"Testo\"},"
+            + "\"2\":{\"pageid\":2,\"title\":\"Milano\",\"thumbnail\":{\"source\":\"x\",\"width\":1}},"
+            + "\"-1\":{\"title\":\"Inesistente\",\"missing\":\"\"}},"
+            + "\"normalized\":[{\"from\":\"roma\",\"to\":\"Roma\"}]}}"));
+
+        assertEquals("Roma", pages.normalized.get("roma"));
+        assertEquals("Testo", pages.pages.get("Roma").getContent());
+        assertEquals("x", pages.pages.get("Milano").getImageUrl());
+        assertEquals(Set.of("Milano"), pages.withoutExtract);
+        assertEquals("Contenuto non disponibile", pages.pages.get("Inesistente").getContent());
+    }
+
+    @Test
+    void parseRandomTitle_readsFirstTitle() throws Exception {
+        assertEquals("Colosseo", parser.parseRandomTitle(json(
+            "{\"batchcomplete\":\"\",\"continue\":{\"rncontinue\":\"0.1|0.2\"},"
+            + "\"query\":{\"random\":[{\"id\":5,\"ns\":0,\"title\":\"Colosseo\"}]}}")));
+    }
+
+    @Test
+    void parseRandomTitles_readsAllTitles() throws Exception {
+        assertEquals(List.of("Colosseo", "Pantheon"), parser.parseRandomTitles(json(
+            "{\"query\":{\"random\":[{\"id\":5,\"ns\":0,\"title\":\"Colosseo\"},"
+            + "{\"title\":\"Pantheon\",\"id\":6,\"ns\":0}]}}")));
+    }
+}
@@ -0,0 +1,122 @@
+package com.openwiki.service;
+
+import com.openwiki.cache.ArticleCache;
+import com.openwiki.cache.SearchCache;
+import com.openwiki.model.Article;
+import com.openwiki.support.StubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WikiServiceBatchTest {
+    private StubServer stub;
+    private final Queue<String> requestedTitles = new ConcurrentLinkedQueue<>();
+    private final Queue<String> extractRequests = new ConcurrentLinkedQueue<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Simula MediaWiki: normalizza i titoli, segnala le pagine mancanti, restituisce le prop richieste
+        // e l'estratto solo per la prima pagina quando ne riceve più di una
+        stub = new StubServer(exchange -> {
+            String titles = StubServer.queryParam(exchange, "titles");
+            boolean info = StubServer.queryParam(exchange, "prop").contains("info");
+            requestedTitles.add(titles);
+            if (!info) {
+                extractRequests.add(titles);
+            }
+            StringBuilder normalized = new StringBuilder();
+            StringBuilder pages = new StringBuilder();
+            int id = 0;
+            for (String title : titles.split("\\|")) {
+                String canonical = ArticleCache.normalizeTitle(title);
+                if (!canonical.equals(title)) {
+                    normalized.append(normalized.length() > 0 ? "," : "")
+                        .append("{\"from\":\"").append(title).append("\",\"to\":\"").append(canonical).append("\"}");
+                }
+                pages.append(pages.length() > 0 ? "," : "");
+                if (canonical.startsWith("Inesistente")) {
+                    pages.append("\"-").append(++id).append("\":{\"title\":\"").append(canonical).append("\",\"missing\":\"\"}");
+                    continue;
+                }
+                pages.append('"').append(++id).append("\":{\"pageid\":").append(id)
+                    .append(",\"title\":\"").append(canonical).append('"');
+                if (info) {
+                    pages.append(",\"fullurl\":\"https://it.wikipedia.org/wiki/").append(canonical).append('"');
+                }
+                if (id == 1) {
+                    pages.append(",\"extract\":\"Testo di ").append(canonical).append('"');
+                }
+                pages.append('}');
+            }
+            return StubServer.Response.ok("{\"query\":{\"normalized\":[" + normalized + "],\"pages\":{" + pages + "}}}");
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    private WikiService newService() {
+        return new WikiService(stub.baseUrl(), new ArticleCache(1024 * 1024, Duration.ofMinutes(5)), SearchCache.fromConfig());
+    }
+
+    @Test
+    void getArticles_keepsRequestOrderAndCompletesMissingExtracts() throws Exception {
+        WikiService wikiService = newService();
+
+        List<Article> articles = wikiService.getArticles(List.of("roma", "Milano", "Inesistente", "Roma"));
+
+        assertEquals(4, articles.size());
+        assertEquals("Roma", articles.get(0).getTitle());
+        assertEquals("Testo di Roma", articles.get(0).getContent());
+        assertEquals("Milano", articles.get(1).getTitle());
+        assertEquals("Testo di Milano", articles.get(1).getContent());
+        assertEquals("https://it.wikipedia.org/wiki/Milano", articles.get(1).getWikiUrl());
+        assertEquals("Contenuto non disponibile", articles.get(2).getContent());
+        assertEquals("Roma", articles.get(3).getTitle());
+
+        // Un batch per i tre titoli distinti, più una richiesta prop=extracts per il testo di Milano:
+        // pageid, url e immagine di Milano vengono dal batch
+        assertEquals(2, stub.requestCount());
+        assertTrue(requestedTitles.contains("roma|Milano|Inesistente"));
+        assertEquals(List.of("Milano"), List.copyOf(extractRequests));
+    }
+
+    @Test
+    void getArticles_splitsIntoGroupsOfFiftyAndReusesCache() throws Exception {
+        WikiService wikiService = newService();
+        wikiService.getArticle("Titolo 0");
+        requestedTitles.clear();
+
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; i < 101; i++) {
+            titles.add("Titolo " + i);
+        }
+        List<Article> articles = wikiService.getArticles(titles);
+
+        assertEquals(101, articles.size());
+        for (int i = 0; i < 101; i++) {
+            assertEquals("Titolo " + i, articles.get(i).getTitle());
+        }
+        List<Integer> groupSizes = new ArrayList<>();
+        for (String request : requestedTitles) {
+            int size = request.split("\\|").length;
+            if (size > 1) {
+                groupSizes.add(size);
+            }
+        }
+        groupSizes.sort(null);
+        assertEquals(List.of(50, 50), groupSizes);
+        assertFalse(requestedTitles.stream().anyMatch(request -> request.equals("Titolo 0")));
+        // Le altre 98 pagine ricevono solo l'estratto, senza riscaricare info e immagini
+        assertEquals(98, extractRequests.size());
+        assertEquals(100, requestedTitles.size());
+    }
+}
@@ -0,0 +1,232 @@
+package com.openwiki.service;
+
+import com.openwiki.cache.ArticleCache;
+import com.openwiki.cache.SearchCache;
+import com.openwiki.model.Article;
+import com.openwiki.model.WikiSearchResult;
+import com.openwiki.support.StubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WikiServiceCacheTest {
+    private StubServer stub;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new StubServer(exchange -> {
+            if ("search".equals(StubServer.queryParam(exchange, "list"))) {
+                String query = StubServer.queryParam(exchange, "srsearch");
+                int limit = Integer.parseInt(StubServer.queryParam(exchange, "srlimit"));
+                return StubServer.Response.ok(searchJson(query, query.startsWith("zzz") ? 0 : Math.min(limit, 8)));
+            }
+            String title = StubServer.queryParam(exchange, "titles");
+            return StubServer.Response.ok(articleJson(title));
+        });
+    }
+
+    private WikiService newService(ArticleCache articleCache) {
+        return new WikiService(stub.baseUrl(), articleCache, SearchCache.fromConfig());
+    }
+
+    private WikiService newService(SearchCache searchCache) {
+        return new WikiService(stub.baseUrl(), new ArticleCache(1024 * 1024, Duration.ofMinutes(5)), searchCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    static String articleJson(String title) {
+        return "{\"query\":{\"pages\":{\"42\":{\"pageid\":42,\"title\":\"" + title + "\","
+            + "\"extract\":\"Testo di " + title + "\","
+            + "\"fullurl\":\"https://it.wikipedia.org/wiki/" + title + "\"}}}}";
+    }
+
+    static String searchJson(String query, int count) {
+        StringBuilder json = new StringBuilder("{\"query\":{\"search\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"title\":\"").append(query).append(' ').append(i)
+                .append("\",\"pageid\":").append(i).append(",\"snippet\":\"...\"}");
+        }
+        return json.append("]}}").toString();
+    }
+
+    @Test
+    void getArticle_repeatedAndNormalizedTitles_hitCache() throws Exception {
+        WikiService wikiService = newService(new ArticleCache(1024 * 1024, Duration.ofMinutes(5)));
+
+        Article first = wikiService.getArticle("Roma");
+        Article second = wikiService.getArticle("roma");
+        Article third = wikiService.getArticle(" Roma ");
+
+        assertEquals(1, stub.requestCount());
+        assertEquals("Roma", first.getTitle());
+        assertEquals(first, second);
+        assertEquals(first, third);
+        assertNotSame(second, third);
+
+        Map<String, Object> stats = articleStats(wikiService);
+        assertEquals(2L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+    }
+
+    @Test
+    void getArticle_concurrentMisses_produceSingleUpstreamRequest() throws Exception {
+        WikiService wikiService = newService(new ArticleCache(1024 * 1024, Duration.ofMinutes(5)));
+        stub.setLatencyMillis(200);
+
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Article>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return wikiService.getArticle("Milano");
+            }));
+        }
+        start.countDown();
+
+        for (Future<Article> future : futures) {
+            assertEquals("Milano", future.get().getTitle());
+        }
+        executor.shutdown();
+
+        assertEquals(1, stub.requestCount());
+    }
+
+    @Test
+    void getArticle_overByteBudget_evictsEntries() throws Exception {
+        // Ogni articolo pesa qualche centinaio di byte: il budget ne contiene solo pochi
+        WikiService wikiService = newService(new ArticleCache(2048, Duration.ofMinutes(5)));
+
+        for (int i = 0; i < 50; i++) {
+            wikiService.getArticle("Pagina" + i);
+        }
+
+        Map<String, Object> stats = articleStats(wikiService);
+        assertTrue((Long) stats.get("evictions") > 0);
+        assertTrue(((Number) stats.get("bytes")).longValue() <= 2048);
+    }
+
+    @Test
+    void getArticle_afterTtl_refetches() throws Exception {
+        WikiService wikiService = newService(new ArticleCache(1024 * 1024, Duration.ofMillis(50)));
+
+        wikiService.getArticle("Napoli");
+        Thread.sleep(120);
+        wikiService.getArticle("Napoli");
+
+        assertEquals(2, stub.requestCount());
+    }
+
+    @Test
+    void search_smallerLimit_isServedFromLargerCachedResult() throws Exception {
+        WikiService wikiService = newService(SearchCache.fromConfig());
+
+        List<WikiSearchResult> large = wikiService.search("Roma", 5);
+        List<WikiSearchResult> small = wikiService.search(" roma ", 3);
+        // Lo stub restituisce al massimo 8 risultati: la lista con limit=20 è completa
+        wikiService.search("Torino", 20);
+        List<WikiSearchResult> larger = wikiService.search("Torino", 50);
+
+        assertEquals(5, large.size());
+        assertEquals(large.subList(0, 3), small);
+        assertEquals(8, larger.size());
+        assertEquals(2, stub.requestCount());
+
+        wikiService.search("Roma", 7);
+        assertEquals(3, stub.requestCount());
+    }
+
+    @Test
+    void search_concurrentMisses_produceSingleUpstreamRequest() throws Exception {
+        WikiService wikiService = newService(SearchCache.fromConfig());
+        stub.setLatencyMillis(200);
+
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<WikiSearchResult>>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            boolean async = i % 2 == 0;
+            futures.add(executor.submit(() -> {
+                start.await();
+                return async ? wikiService.searchAsync("Genova", 5).get() : wikiService.search("Genova", 5);
+            }));
+        }
+        start.countDown();
+
+        for (Future<List<WikiSearchResult>> future : futures) {
+            assertEquals(5, future.get().size());
+        }
+        executor.shutdown();
+
+        assertEquals(1, stub.requestCount());
+        Map<String, Object> stats = searchStats(wikiService);
+        assertEquals(15L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+    }
+
+    @Test
+    void search_emptyResult_expiresAfterNegativeTtl() throws Exception {
+        SearchCache searchCache = new SearchCache(100, Duration.ofMinutes(5), Duration.ofMillis(50),
+            Duration.ZERO, false);
+        WikiService wikiService = newService(searchCache);
+
+        assertTrue(wikiService.search("zzzqx", 10).isEmpty());
+        assertTrue(wikiService.search("zzzqx", 10).isEmpty());
+        assertEquals(1, stub.requestCount());
+
+        Thread.sleep(120);
+        wikiService.search("zzzqx", 10);
+        assertEquals(2, stub.requestCount());
+    }
+
+    @Test
+    void search_staleEntry_isServedWhileRefreshingInBackground() throws Exception {
+        SearchCache searchCache = new SearchCache(100, Duration.ofMillis(50), Duration.ofSeconds(10),
+            Duration.ofMinutes(5), true);
+        WikiService wikiService = newService(searchCache);
+
+        wikiService.search("Venezia", 5);
+        Thread.sleep(100);
+        stub.setLatencyMillis(500);
+
+        long start = System.nanoTime();
+        List<WikiSearchResult> stale = wikiService.search("Venezia", 5);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(5, stale.size());
+        assertTrue(elapsedMillis < 250, "stale result should not wait for upstream");
+
+        for (int i = 0; i < 50 && stub.requestCount() < 2; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(2, stub.requestCount());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> searchStats(WikiService wikiService) {
+        return (Map<String, Object>) wikiService.getCacheStats().get("search");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> articleStats(WikiService wikiService) {
+        return (Map<String, Object>) wikiService.getCacheStats().get("article");
+    }
+}
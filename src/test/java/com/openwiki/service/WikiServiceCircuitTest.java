@@ -0,0 +1,65 @@
+package com.openwiki.service;
+
+import com.openwiki.cache.ArticleCache;
+import com.openwiki.cache.SearchCache;
+import com.openwiki.http.UpstreamClient;
+import com.openwiki.http.UpstreamGuard;
+import com.openwiki.http.UpstreamUnavailableException;
+import com.openwiki.support.StubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WikiServiceCircuitTest {
+    private StubServer stub;
+    private final AtomicBoolean failing = new AtomicBoolean();
+    private WikiService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new StubServer(exchange -> failing.get()
+            ? new StubServer.Response(503, "{\"error\":\"overloaded\"}")
+            : StubServer.Response.ok(WikiServiceCacheTest.articleJson(StubServer.queryParam(exchange, "titles"))));
+        service = new WikiService(stub.baseUrl(), new ArticleCache(1024 * 1024, Duration.ofMinutes(5)),
+            SearchCache.fromConfig(), UpstreamClient.shared(),
+            new UpstreamGuard("wikipedia", 8, 8, Duration.ofSeconds(2), 2, Duration.ofMinutes(1), false, Duration.ZERO));
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    void openCircuitServesCachedArticlesAndFailsFastOnMisses() throws Exception {
+        assertEquals("Testo di Roma", service.getArticle("Roma").getContent());
+
+        failing.set(true);
+        assertThrows(Exception.class, () -> service.getArticle("Milano"));
+        assertThrows(Exception.class, () -> service.getArticle("Torino"));
+        int requests = stub.requestCount();
+
+        // Roma è in cache e non passa dal circuit breaker; Napoli fallisce senza contattare Wikipedia
+        assertEquals("Testo di Roma", service.getArticleAsync("Roma").get().getContent());
+        ExecutionException error = assertThrows(ExecutionException.class, () -> service.getArticleAsync("Napoli").get());
+        assertInstanceOf(UpstreamUnavailableException.class, rootCause(error));
+        assertEquals(requests, stub.requestCount());
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> circuit = (Map<String, Object>) service.getCacheStats().get("circuit");
+        assertEquals("OPEN", circuit.get("state"));
+        assertEquals(1L, circuit.get("shortCircuited"));
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        while (e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+}
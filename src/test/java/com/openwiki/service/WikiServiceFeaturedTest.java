@@ -0,0 +1,91 @@
+package com.openwiki.service;
+
+import com.openwiki.cache.ArticleCache;
+import com.openwiki.cache.SearchCache;
+import com.openwiki.model.Article;
+import com.openwiki.support.StubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WikiServiceFeaturedTest {
+    private final AtomicInteger randomRequests = new AtomicInteger();
+    private final AtomicInteger nextTitle = new AtomicInteger();
+    private StubServer stub;
+    private WikiService wikiService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new StubServer(exchange -> {
+            if ("random".equals(StubServer.queryParam(exchange, "list"))) {
+                randomRequests.incrementAndGet();
+                int count = Integer.parseInt(StubServer.queryParam(exchange, "rnlimit"));
+                StringBuilder json = new StringBuilder("{\"query\":{\"random\":[");
+                for (int i = 0; i < count; i++) {
+                    json.append(i > 0 ? "," : "").append("{\"ns\":0,\"title\":\"Casuale ")
+                        .append(nextTitle.incrementAndGet()).append("\"}");
+                }
+                return StubServer.Response.ok(json.append("]}}").toString());
+            }
+            StringBuilder json = new StringBuilder("{\"query\":{\"pages\":{");
+            String[] titles = StubServer.queryParam(exchange, "titles").split("\\|");
+            for (int i = 0; i < titles.length; i++) {
+                json.append(i > 0 ? "," : "").append('"').append(i + 1).append("\":{\"pageid\":").append(i + 1)
+                    .append(",\"title\":\"").append(titles[i]).append("\",\"extract\":\"Testo\"}");
+            }
+            return StubServer.Response.ok(json.append("}}}").toString());
+        });
+        wikiService = new WikiService(stub.baseUrl(), new ArticleCache(1024 * 1024, Duration.ofMinutes(5)),
+            SearchCache.fromConfig());
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    private Map<?, ?> poolStats() {
+        return (Map<?, ?>) wikiService.getCacheStats().get("featured");
+    }
+
+    @Test
+    void featured_isServedFromPrefetchedPool() throws Exception {
+        wikiService.prefetchFeaturedArticles().join();
+        assertEquals(1, randomRequests.get());
+        assertEquals(20, poolStats().get("depth"));
+        // Le pagine casuali della coda non occupano la cache degli articoli
+        assertEquals(0L, ((Map<?, ?>) wikiService.getCacheStats().get("article")).get("entries"));
+
+        int upstreamRequests = stub.requestCount();
+        Set<String> titles = new HashSet<>();
+        for (int i = 0; i < 9; i++) {
+            titles.add(wikiService.getFeaturedArticle().getTitle());
+        }
+        // Ogni articolo esce dalla coda una volta sola; finché la coda è sopra la soglia nessuna chiamata
+        assertEquals(9, titles.size());
+        assertEquals(upstreamRequests, stub.requestCount());
+        assertEquals(9L, poolStats().get("served"));
+        assertEquals(0L, poolStats().get("fallbacks"));
+    }
+
+    @Test
+    void featured_emptyPool_fallsBackToLiveRequestAndRefills() throws Exception {
+        Article article = wikiService.getFeaturedArticleAsync().join();
+
+        assertTrue(article.getTitle().startsWith("Casuale "));
+        assertEquals(1L, poolStats().get("fallbacks"));
+        // La chiamata diretta ha avviato il riempimento in background
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((Long) poolStats().get("refills") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(20, poolStats().get("depth"));
+        assertEquals(2, randomRequests.get());
+    }
+}
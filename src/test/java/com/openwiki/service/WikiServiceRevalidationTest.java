@@ -0,0 +1,110 @@
+package com.openwiki.service;
+
+import com.openwiki.cache.ArticleCache;
+import com.openwiki.cache.SearchCache;
+import com.openwiki.support.StubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WikiServiceRevalidationTest {
+    private final Map<String, Long> revisions = new ConcurrentHashMap<>();
+    private final AtomicInteger infoRequests = new AtomicInteger();
+    private final AtomicInteger articleRequests = new AtomicInteger();
+    // Le richieste prop=info che contengono questo titolo rispondono con un errore
+    private volatile String failingTitle;
+    private StubServer stub;
+    private WikiService wikiService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new StubServer(exchange -> {
+            boolean info = "info".equals(StubServer.queryParam(exchange, "prop"));
+            (info ? infoRequests : articleRequests).incrementAndGet();
+            String[] titles = StubServer.queryParam(exchange, "titles").split("\\|");
+            if (info && failingTitle != null && List.of(titles).contains(failingTitle)) {
+                return new StubServer.Response(502, "<html>Bad Gateway</html>");
+            }
+            StringBuilder json = new StringBuilder("{\"query\":{\"pages\":{");
+            for (int i = 0; i < titles.length; i++) {
+                long revision = revisions.getOrDefault(titles[i], 1L);
+                json.append(i > 0 ? "," : "").append('"').append(i + 1).append("\":{\"pageid\":").append(i + 1)
+                    .append(",\"title\":\"").append(titles[i]).append("\",\"lastrevid\":").append(revision);
+                if (!info) {
+                    json.append(",\"extract\":\"Revisione ").append(revision).append('"');
+                }
+                json.append('}');
+            }
+            return StubServer.Response.ok(json.append("}}}").toString());
+        });
+        wikiService = new WikiService(stub.baseUrl(), new ArticleCache(1024 * 1024, Duration.ofMinutes(5)),
+            SearchCache.fromConfig());
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    void revalidate_refetchesOnlyChangedPages() throws Exception {
+        for (String title : List.of("Roma", "Milano", "Napoli")) {
+            wikiService.getArticle(title);
+        }
+        articleRequests.set(0);
+        revisions.put("Milano", 2L);
+
+        assertEquals(List.of("Milano"), wikiService.revalidateHotArticles(10).join());
+        assertEquals(1, infoRequests.get());
+        assertEquals(1, articleRequests.get());
+        assertEquals("Revisione 2", wikiService.getArticle("Milano").getContent());
+        assertEquals(2L, wikiService.getArticle("Milano").getRevision());
+        assertEquals("Revisione 1", wikiService.getArticle("Roma").getContent());
+        assertEquals(1, articleRequests.get());
+
+        // Nessuna modifica: solo la richiesta prop=info
+        assertEquals(List.of(), wikiService.revalidateHotArticles(10).join());
+        assertEquals(2, infoRequests.get());
+        assertEquals(1, articleRequests.get());
+    }
+
+    @Test
+    void revalidate_groupsFiftyTitlesPerInfoRequest() throws Exception {
+        for (int i = 0; i < 120; i++) {
+            wikiService.getArticle("Pagina " + i);
+        }
+
+        assertEquals(List.of(), wikiService.revalidateHotArticles(500).join());
+        assertEquals(3, infoRequests.get());
+        Map<?, ?> stats = (Map<?, ?>) wikiService.getCacheStats().get("revalidation");
+        assertEquals(120L, stats.get("checked"));
+    }
+
+    @Test
+    void revalidate_failedInfoBatchIsCountedAndOthersProceed() throws Exception {
+        for (int i = 0; i < 120; i++) {
+            wikiService.getArticle("Pagina " + i);
+        }
+        articleRequests.set(0);
+        failingTitle = "Pagina 7";
+
+        // Il passaggio si completa anche se un gruppo fallisce
+        assertEquals(List.of(), wikiService.revalidateHotArticles(500).join());
+        assertEquals(3, infoRequests.get());
+        Map<?, ?> stats = (Map<?, ?>) wikiService.getCacheStats().get("revalidation");
+        long failures = (Long) stats.get("failures");
+        assertTrue(failures == 20 || failures == 50, "the whole failed batch is counted: " + failures);
+        assertEquals(120L - failures, stats.get("checked"));
+
+        // Gli articoli del gruppo fallito restano in cache e si servono senza altre richieste
+        int requests = stub.requestCount();
+        assertEquals("Revisione 1", wikiService.getArticle("Pagina 7").getContent());
+        assertEquals(requests, stub.requestCount());
+    }
+}
@@ -0,0 +1,20 @@
+package com.openwiki.support;
+
+// Punta HibernateConfig su H2 in modalità MySQL, con lo schema di sql/02_create_tables.sql.
+// Va chiamato prima del primo accesso a HibernateConfig.
+public class EmbeddedDatabase {
+    public static final String URL = "jdbc:h2:mem:openwiki;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;"
+        + "INIT=RUNSCRIPT FROM 'sql/02_create_tables.sql'";
+    public static final int POOL_SIZE = 4;
+
+    public static void configure() {
+        System.setProperty("db.url", URL);
+        System.setProperty("db.username", "sa");
+        System.setProperty("db.password", "");
+        System.setProperty("db.driver", "org.h2.Driver");
+        System.setProperty("db.dialect", "org.hibernate.dialect.H2Dialect");
+        System.setProperty("db.schemaAction", "none");
+        System.setProperty("db.pool.maxSize", String.valueOf(POOL_SIZE));
+        System.setProperty("db.pool.minIdle", "1");
+    }
+}
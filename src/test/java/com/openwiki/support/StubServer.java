@@ -0,0 +1,110 @@
+package com.openwiki.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Server HTTP locale che simula Wikipedia / Flask nei test
+public class StubServer implements AutoCloseable {
+    private final HttpServer server;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final Map<String, AtomicInteger> pathCounts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    private volatile long latencyMillis;
+
+    public StubServer(Function<HttpExchange, Response> handler) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            requestCount.incrementAndGet();
+            pathCounts.computeIfAbsent(exchange.getRequestURI().getPath(), p -> new AtomicInteger()).incrementAndGet();
+            // La latenza simulata non occupa un thread per richiesta: la risposta viene schedulata
+            if (latencyMillis > 0) {
+                scheduler.schedule(() -> respond(exchange, handler), latencyMillis, TimeUnit.MILLISECONDS);
+            } else {
+                respond(exchange, handler);
+            }
+        });
+        server.start();
+    }
+
+    private static void respond(HttpExchange exchange, Function<HttpExchange, Response> handler) {
+        try {
+            Response response = handler.apply(exchange);
+            byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(response.status, body.length == 0 ? -1 : body.length);
+            if (body.length > 0) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        } catch (IOException e) {
+            // il client ha chiuso la connessione
+        } finally {
+            exchange.close();
+        }
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public int requestCount() {
+        return requestCount.get();
+    }
+
+    public int requestCount(String path) {
+        AtomicInteger count = pathCounts.get(path);
+        return count != null ? count.get() : 0;
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public static String queryParam(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq >= 0 ? pair.substring(0, eq) : pair;
+            if (key.equals(name)) {
+                return java.net.URLDecoder.decode(eq >= 0 ? pair.substring(eq + 1) : "", StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        scheduler.shutdownNow();
+    }
+
+    public static class Response {
+        final int status;
+        final String body;
+
+        public Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public static Response ok(String body) {
+            return new Response(200, body);
+        }
+    }
+}